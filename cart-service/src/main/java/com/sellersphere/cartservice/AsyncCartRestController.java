@@ -0,0 +1,66 @@
+package com.sellersphere.cartservice;
+
+import com.sellersphere.authorization.AuthorizedUser;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The non-blocking variant of {@link CartRestController}: the servlet thread is released while
+ * DynamoDB is called and the response is written when the returned future completes.
+ */
+@RestController
+@RequestMapping("/cart")
+@ConditionalOnProperty(name = "cart.service.mode", havingValue = "async")
+public final class AsyncCartRestController {
+
+    private final AsyncCartService cartService;
+
+    public AsyncCartRestController(AsyncCartService cartService) {
+        this.cartService = cartService;
+    }
+
+    @GetMapping
+    public CompletableFuture<ResponseEntity<List<CartItem>>> getUserCart(){
+        return AuthorizedUser.current()
+                .map(auth -> cartService.getUserCart(auth.userId()).thenApply(ResponseEntity::ok))
+                .orElseGet(() -> CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.UNAUTHORIZED)));
+    }
+
+    @PatchMapping
+    public CompletableFuture<Void> updateUserCart(@RequestBody @Valid CartItem cartItem){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.updateUserCart(auth.userId(), cartItem);
+    }
+
+    @PatchMapping("/delta")
+    public CompletableFuture<CartItem> adjustUserCartItem(@RequestBody @Valid CartItemDelta cartItemDelta){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.adjustUserCartItem(auth.userId(), cartItemDelta)
+                .thenApply(cartItem -> cartItem.orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT)));
+    }
+
+    @DeleteMapping
+    public CompletableFuture<Void> clearUserCart(){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.clearUserCart(auth.userId());
+    }
+
+    @PatchMapping("/items")
+    public CompletableFuture<List<CartItemUpdateResult>> updateUserCartItems(@RequestBody @Size(min = 1, max = 100) List<@Valid CartItem> cartItems){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.updateUserCart(auth.userId(), cartItems);
+    }
+
+}
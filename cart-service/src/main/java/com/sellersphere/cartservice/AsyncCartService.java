@@ -0,0 +1,27 @@
+package com.sellersphere.cartservice;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The non-blocking variant of {@link CartService}.
+ */
+public interface AsyncCartService {
+
+    CompletableFuture<List<CartItem>> getUserCart(String userId);
+
+    CompletableFuture<Void> updateUserCart(String userId, CartItem cartItem);
+
+    /**
+     * @see CartService#updateUserCart(String, List)
+     */
+    CompletableFuture<List<CartItemUpdateResult>> updateUserCart(String userId, List<CartItem> cartItems);
+
+    /**
+     * @see CartService#adjustUserCartItem(String, CartItemDelta)
+     */
+    CompletableFuture<Optional<CartItem>> adjustUserCartItem(String userId, CartItemDelta cartItemDelta);
+
+    CompletableFuture<Void> clearUserCart(String userId);
+}
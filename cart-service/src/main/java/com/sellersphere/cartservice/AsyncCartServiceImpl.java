@@ -0,0 +1,116 @@
+package com.sellersphere.cartservice;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Stores the cart lines like {@link CartServiceImpl}, one {@code CART_ITEM#<productId>} item per line,
+ * with the same requests sent through the {@link DynamoDbAsyncClient}.
+ */
+@Service
+@ConditionalOnProperty(name = "cart.service.mode", havingValue = "async")
+public final class AsyncCartServiceImpl implements AsyncCartService {
+
+    private final DynamoDbAsyncClient dynamoDB;
+    private final AsyncDynamoDBBatchWriter batchWriter;
+
+    public AsyncCartServiceImpl(DynamoDbAsyncClient dynamoDB,
+                                @Value("${cart.storage:item-per-line}") String storage) {
+        if (!storage.equals("item-per-line")) {
+            throw new IllegalStateException("cart.service.mode=async only supports cart.storage=item-per-line");
+        }
+        this.dynamoDB = dynamoDB;
+        this.batchWriter = new AsyncDynamoDBBatchWriter(dynamoDB);
+    }
+
+    @Override
+    public CompletableFuture<List<CartItem>> getUserCart(String userId) {
+        var cart = new ArrayList<CartItem>();
+        return dynamoDB.queryPaginator(CartServiceImpl.userCartQuery(userId)).items()
+                .subscribe(item -> cart.add(CartServiceImpl.decodeCartItem(item)))
+                .thenApply(_ -> cart);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateUserCart(String userId, CartItem cartItem) {
+        var key = CartServiceImpl.cartItemKey(userId, cartItem.productId());
+        if (cartItem.quantity() == 0) {
+            return dynamoDB.deleteItem(DeleteItemRequest.builder()
+                    .tableName("Users")
+                    .key(key)
+                    .build()).thenApply(_ -> null);
+        }
+        return dynamoDB.updateItem(UpdateItemRequest.builder()
+                .tableName("Users")
+                .key(key)
+                .updateExpression("SET Quantity = :quantity")
+                .expressionAttributeValues(Map.of(":quantity", AttributeValue.fromN(String.valueOf(cartItem.quantity()))))
+                .build()).thenApply(_ -> null);
+    }
+
+    @Override
+    public CompletableFuture<List<CartItemUpdateResult>> updateUserCart(String userId, List<CartItem> cartItems) {
+        var lastUpdates = CartServiceImpl.lastUpdates(cartItems);
+        var requests = new ArrayList<WriteRequest>(lastUpdates.size());
+        for (CartItem cartItem : lastUpdates.values()) {
+            requests.add(CartServiceImpl.cartItemWriteRequest(userId, cartItem.productId(), cartItem.quantity()));
+        }
+        return batchWriter.writeAll("Users", requests).thenApply(unprocessed ->
+                CartServiceImpl.updateResults(cartItems, lastUpdates, CartServiceImpl.productIdsOf(unprocessed), false));
+    }
+
+    @Override
+    public CompletableFuture<Optional<CartItem>> adjustUserCartItem(String userId, CartItemDelta cartItemDelta) {
+        var productId = cartItemDelta.productId();
+        return dynamoDB.updateItem(CartServiceImpl.cartItemDeltaRequest(userId, cartItemDelta))
+                .thenCompose(response -> {
+                    int quantity = Integer.parseUnsignedInt(response.attributes().get("Quantity").n());
+                    var cartItem = Optional.of(new CartItem(productId, quantity));
+                    if (quantity > 0) return CompletableFuture.completedFuture(cartItem);
+                    return dynamoDB.deleteItem(CartServiceImpl.emptyCartItemDeleteRequest(userId, productId))
+                            .exceptionally(e -> {
+                                // units were added in between, the item stays
+                                if (conditionCheckFailed(e)) return null;
+                                throw asCompletionException(e);
+                            })
+                            .thenApply(_ -> cartItem);
+                })
+                .exceptionally(e -> {
+                    // the quantity would drop below 0 or overflow
+                    if (conditionCheckFailed(e)) return Optional.empty();
+                    throw asCompletionException(e);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> clearUserCart(String userId) {
+        var deletes = new ArrayList<WriteRequest>();
+        return dynamoDB.queryPaginator(CartServiceImpl.userCartKeysQuery(userId)).items()
+                .subscribe(item -> deletes.add(CartServiceImpl.cartItemWriteRequest(userId, CartServiceImpl.productIdOf(item.get("SK")), 0)))
+                .thenCompose(_ -> batchWriter.writeAll("Users", deletes))
+                .thenAccept(unprocessed -> {
+                    if (!unprocessed.isEmpty()) {
+                        throw new IllegalStateException("Could not delete %d items of the cart of %s".formatted(unprocessed.size(), userId));
+                    }
+                });
+    }
+
+    private static boolean conditionCheckFailed(Throwable failure) {
+        var cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        return cause instanceof ConditionalCheckFailedException;
+    }
+
+    private static CompletionException asCompletionException(Throwable failure) {
+        return failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+    }
+}
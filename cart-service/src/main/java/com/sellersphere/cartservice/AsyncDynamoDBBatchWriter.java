@@ -0,0 +1,54 @@
+package com.sellersphere.cartservice;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.sellersphere.cartservice.DynamoDBBatchWriter.*;
+
+/**
+ * The non-blocking variant of {@link DynamoDBBatchWriter}, no thread is held while waiting to retry.
+ */
+final class AsyncDynamoDBBatchWriter {
+
+    private final DynamoDbAsyncClient dynamoDB;
+
+    AsyncDynamoDBBatchWriter(DynamoDbAsyncClient dynamoDB) {
+        this.dynamoDB = dynamoDB;
+    }
+
+    /**
+     * @return the requests that were still unprocessed after all the retries
+     */
+    CompletableFuture<List<WriteRequest>> writeAll(String tableName, List<WriteRequest> requests) {
+        var batches = new ArrayList<CompletableFuture<List<WriteRequest>>>();
+        for (int from = 0; from < requests.size(); from += MAX_BATCH_SIZE) {
+            var batch = requests.subList(from, Math.min(from + MAX_BATCH_SIZE, requests.size()));
+            batches.add(writeBatch(tableName, batch, 0));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).thenApply(_ -> {
+            var failed = new ArrayList<WriteRequest>();
+            for (var batch : batches) failed.addAll(batch.join());
+            return failed;
+        });
+    }
+
+    private CompletableFuture<List<WriteRequest>> writeBatch(String tableName, List<WriteRequest> remaining, int attempt) {
+        return dynamoDB.batchWriteItem(BatchWriteItemRequest.builder()
+                .requestItems(Map.of(tableName, remaining))
+                .build()).thenCompose(response -> {
+            var unprocessed = response.unprocessedItems().get(tableName);
+            if (unprocessed == null || unprocessed.isEmpty()) return CompletableFuture.completedFuture(List.of());
+            if (attempt + 1 == MAX_ATTEMPTS) return CompletableFuture.completedFuture(unprocessed);
+            var backoff = CompletableFuture.delayedExecutor(BASE_BACKOFF_MILLIS << (attempt + 1), TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> unprocessed, backoff)
+                    .thenCompose(retried -> writeBatch(tableName, retried, attempt + 1));
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.sellersphere.cartservice;
+
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.Length;
+
+/**
+ * A relative change of the quantity of a cart item, negative to remove units.
+ */
+public record CartItemDelta(@NotNull @Length(min = 24, max = 24) String productId,
+                            int delta) {
+}
@@ -0,0 +1,15 @@
+package com.sellersphere.cartservice;
+
+public record CartItemUpdateResult(String productId, int quantity, Status status) {
+
+    public enum Status {
+        /** Written to the cart. */
+        APPLIED,
+        /** Accepted by the write-behind buffer, written on its next flush. */
+        QUEUED,
+        /** Overridden by a later item of the same request for the same product. */
+        SUPERSEDED,
+        /** DynamoDB kept rejecting the write after all the retries. */
+        FAILED
+    }
+}
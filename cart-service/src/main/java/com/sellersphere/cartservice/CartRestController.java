@@ -1,22 +1,31 @@
 package com.sellersphere.cartservice;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sellersphere.authorization.AuthorizedUser;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/cart")
+@ConditionalOnProperty(name = "cart.service.mode", havingValue = "sync", matchIfMissing = true)
 public final class CartRestController {
 
     private final CartService cartService;
+    private final ObjectMapper objectMapper;
 
-    public CartRestController(CartService cartService) {
+    public CartRestController(CartService cartService, ObjectMapper objectMapper) {
         this.cartService = cartService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -26,6 +35,25 @@ public final class CartRestController {
         }).orElseGet(() -> new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
     }
 
+    /**
+     * Writes the cart items as soon as each page is read, instead of buffering the whole cart.
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUserCart(){
+        return AuthorizedUser.current().map(auth -> {
+            var userId = auth.userId();
+            StreamingResponseBody body = out -> {
+                try (var generator = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                     var cart = cartService.streamUserCart(userId)) {
+                    generator.writeStartArray();
+                    for (var items = cart.iterator(); items.hasNext(); ) generator.writeObject(items.next());
+                    generator.writeEndArray();
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }).orElseGet(() -> new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+    }
+
     @PatchMapping
     public void updateUserCart(@RequestBody @Valid CartItem cartItem){
         var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
@@ -33,4 +61,29 @@ public final class CartRestController {
         cartService.updateUserCart(auth.userId(), cartItem);
     }
 
+    /**
+     * Adds units to, or removes units from, a cart item without reading the cart first.
+     */
+    @PatchMapping("/delta")
+    public CartItem adjustUserCartItem(@RequestBody @Valid CartItemDelta cartItemDelta){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.adjustUserCartItem(auth.userId(), cartItemDelta)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT));
+    }
+
+    @DeleteMapping
+    public void clearUserCart(){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        cartService.clearUserCart(auth.userId());
+    }
+
+    @PatchMapping("/items")
+    public List<CartItemUpdateResult> updateUserCartItems(@RequestBody @Size(min = 1, max = 100) List<@Valid CartItem> cartItems){
+        var auth = AuthorizedUser.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+        return cartService.updateUserCart(auth.userId(), cartItems);
+    }
+
 }
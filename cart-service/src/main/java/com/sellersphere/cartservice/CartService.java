@@ -1,10 +1,33 @@
 package com.sellersphere.cartservice;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CartService {
 
     List<CartItem> getUserCart(String userId);
 
+    /**
+     * Lazily reads the cart, page after page, the stream must be closed.
+     */
+    Stream<CartItem> streamUserCart(String userId);
+
     void updateUserCart(String userId, CartItem cartItem);
+
+    /**
+     * Applies many cart updates at once, the last item wins when a product appears more than once.
+     *
+     * @return the result of every item, in the order of the given items
+     */
+    List<CartItemUpdateResult> updateUserCart(String userId, List<CartItem> cartItems);
+
+    /**
+     * Atomically adds the delta to the quantity of the item, removing the item when it reaches 0.
+     *
+     * @return the item with its new quantity, or empty if the quantity would drop below 0
+     */
+    Optional<CartItem> adjustUserCartItem(String userId, CartItemDelta cartItemDelta);
+
+    void clearUserCart(String userId);
 }
@@ -7,12 +7,15 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.web.SecurityFilterChain;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.net.URI;
@@ -52,4 +55,19 @@ public class CartServiceApplication {
 				.build();
 	}
 
+	@Bean
+	@ConditionalOnProperty(name = "cart.service.mode", havingValue = "async")
+	public DynamoDbAsyncClient dynamoDbAsyncClient(@Value("${DYNAMODB_URL}") String url,
+												   @Value("${AWS_REGION}") String region,
+												   @Value("${AWS_ACCESS_KEY_ID}") String accessKeyId,
+												   @Value("${AWS_SECRET_ACCESS_KEY}") String secretAccessKey,
+												   @Value("${cart.async.max-concurrency:1000}") int maxConcurrency){
+		return DynamoDbAsyncClient.builder()
+				.endpointOverride(URI.create(url))
+				.region(Region.of(region))
+				.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKeyId, secretAccessKey)))
+				.httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConcurrency))
+				.build();
+	}
+
 }
@@ -1,57 +1,281 @@
 package com.sellersphere.cartservice;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Stream;
 
+import static com.sellersphere.cartservice.CartItemUpdateResult.Status.*;
+
+/**
+ * Stores every cart line as its own {@code CART_ITEM#<productId>} item under the user partition.
+ */
 @Service
+@ConditionalOnProperty(name = "cart.storage", havingValue = "item-per-line", matchIfMissing = true)
 public final class CartServiceImpl implements CartService {
 
     public static final AttributeValue CART_ITEM_PREFIX = AttributeValue.fromS("CART_ITEM#");
+    private static final AttributeValue ZERO = AttributeValue.fromN("0");
     private final DynamoDbClient dynamoDB;
+    private final DynamoDBBatchWriter batchWriter;
+    private final CartWriteBehindBuffer writeBehind;
+    private final UserCartCache cache;
 
-    public CartServiceImpl(DynamoDbClient dynamoDB) {
+    public CartServiceImpl(DynamoDbClient dynamoDB, ObjectProvider<CartWriteBehindBuffer> writeBehind,
+                           ObjectProvider<UserCartCache> cache) {
         this.dynamoDB = dynamoDB;
+        this.batchWriter = new DynamoDBBatchWriter(dynamoDB);
+        this.writeBehind = writeBehind.getIfAvailable();
+        this.cache = cache.getIfAvailable();
     }
 
     @Override
     public List<CartItem> getUserCart(String userId) {
-        var query = dynamoDB.query(QueryRequest.builder()
+        var changes = writeBehind == null ? Map.<String, Integer>of() : writeBehind.changesOf(userId);
+        var cart = cache == null ? loadUserCart(userId) : cache.get(userId, this::loadUserCart);
+        return CartWriteBehindBuffer.overlay(cart, changes);
+    }
+
+    private List<CartItem> loadUserCart(String userId) {
+        var cart = new ArrayList<CartItem>();
+        for (Map<String, AttributeValue> item : queryUserCart(userId)) cart.add(decodeCartItem(item));
+        return cart;
+    }
+
+    @Override
+    public Stream<CartItem> streamUserCart(String userId) {
+        var cached = cache == null ? Optional.<List<CartItem>>empty() : cache.getIfPresent(userId);
+        var cart = cached.isPresent()
+                ? cached.get().stream()
+                : queryUserCart(userId).stream().map(CartServiceImpl::decodeCartItem);
+        return writeBehind == null ? cart : writeBehind.overlay(userId, cart);
+    }
+
+    /**
+     * The items of all the query pages, the next page is fetched only once the previous one is consumed.
+     */
+    private SdkIterable<Map<String, AttributeValue>> queryUserCart(String userId) {
+        return dynamoDB.queryPaginator(userCartQuery(userId)).items();
+    }
+
+    /**
+     * The keys of all the cart items, including the ones a delta left at 0.
+     */
+    private SdkIterable<Map<String, AttributeValue>> queryUserCartKeys(String userId) {
+        return dynamoDB.queryPaginator(userCartKeysQuery(userId)).items();
+    }
+
+    static QueryRequest userCartQuery(String userId) {
+        return QueryRequest.builder()
                 .tableName("Users")
                 .projectionExpression("SK, Quantity")
                 .keyConditionExpression("PK = :userId AND begins_with(SK, :cartItemPrefix)")
+                // a delta leaves the item at 0 until its delete
+                .filterExpression("Quantity > :zero")
+                .expressionAttributeValues(Map.of(":userId", AttributeValue.fromS(userId), ":cartItemPrefix", CART_ITEM_PREFIX,
+                        ":zero", ZERO))
+                .build();
+    }
+
+    static QueryRequest userCartKeysQuery(String userId) {
+        return QueryRequest.builder()
+                .tableName("Users")
+                .projectionExpression("SK")
+                .keyConditionExpression("PK = :userId AND begins_with(SK, :cartItemPrefix)")
                 .expressionAttributeValues(Map.of(":userId", AttributeValue.fromS(userId), ":cartItemPrefix", CART_ITEM_PREFIX))
-                .build()).items();
-        if (query.isEmpty()) return List.of();
-        var cart = new ArrayList<CartItem>(query.size());
-        for (Map<String, AttributeValue> item : query) {
-            String productId = item.get("SK").s().substring(CART_ITEM_PREFIX.s().length());
-            int quantity = Integer.parseUnsignedInt(item.get("Quantity").n());
-            cart.add(new CartItem(productId, quantity));
-        }
-        return cart;
+                .build();
     }
 
     @Override
     public void updateUserCart(String userId, CartItem cartItem) {
-        var sk = AttributeValue.fromS(CART_ITEM_PREFIX.s().concat(cartItem.productId()));
-        if (cartItem.quantity() == 0){
+        if (writeBehind != null) {
+            writeBehind.enqueue(userId, cartItem);
+        } else if (cartItem.quantity() == 0){
             // delete the item
             dynamoDB.deleteItem(DeleteItemRequest.builder()
                     .tableName("Users")
-                    .key(Map.of("PK", AttributeValue.fromS(userId), "SK", sk))
+                    .key(cartItemKey(userId, cartItem.productId()))
+                    .build());
+        } else {
+            dynamoDB.updateItem(UpdateItemRequest.builder()
+                    .tableName("Users")
+                    .key(cartItemKey(userId, cartItem.productId()))
+                    .updateExpression("SET Quantity = :quantity")
+                    .expressionAttributeValues(Map.of(":quantity", AttributeValue.fromN(String.valueOf(cartItem.quantity()))))
                     .build());
-            return;
         }
-        dynamoDB.updateItem(UpdateItemRequest.builder()
+        if (cache != null) cache.update(userId, cartItem);
+    }
+
+    @Override
+    public List<CartItemUpdateResult> updateUserCart(String userId, List<CartItem> cartItems) {
+        var lastUpdates = lastUpdates(cartItems);
+        Set<String> failedProducts = Set.of();
+        if (writeBehind != null) {
+            lastUpdates.values().forEach(cartItem -> writeBehind.enqueue(userId, cartItem));
+        } else {
+            var requests = new ArrayList<WriteRequest>(lastUpdates.size());
+            for (CartItem cartItem : lastUpdates.values()) {
+                requests.add(cartItemWriteRequest(userId, cartItem.productId(), cartItem.quantity()));
+            }
+            failedProducts = productIdsOf(batchWriter.writeAll("Users", requests));
+        }
+        if (cache != null) {
+            if (failedProducts.isEmpty()) lastUpdates.values().forEach(cartItem -> cache.update(userId, cartItem));
+            else cache.invalidate(userId);
+        }
+        return updateResults(cartItems, lastUpdates, failedProducts, writeBehind != null);
+    }
+
+    /**
+     * BatchWriteItem rejects a request touching the same key twice, only the last update per product is written.
+     */
+    static LinkedHashMap<String, CartItem> lastUpdates(List<CartItem> cartItems) {
+        var lastUpdates = new LinkedHashMap<String, CartItem>();
+        for (CartItem cartItem : cartItems) lastUpdates.put(cartItem.productId(), cartItem);
+        return lastUpdates;
+    }
+
+    static List<CartItemUpdateResult> updateResults(List<CartItem> cartItems, Map<String, CartItem> lastUpdates,
+                                                    Set<String> failedProducts, boolean queued) {
+        var results = new ArrayList<CartItemUpdateResult>(cartItems.size());
+        for (CartItem cartItem : cartItems) {
+            CartItemUpdateResult.Status status;
+            if (lastUpdates.get(cartItem.productId()) != cartItem) status = SUPERSEDED;
+            else if (queued) status = QUEUED;
+            else if (failedProducts.contains(cartItem.productId())) status = FAILED;
+            else status = APPLIED;
+            results.add(new CartItemUpdateResult(cartItem.productId(), cartItem.quantity(), status));
+        }
+        return results;
+    }
+
+    static Set<String> productIdsOf(List<WriteRequest> requests) {
+        if (requests.isEmpty()) return Set.of();
+        var productIds = HashSet.<String>newHashSet(requests.size());
+        for (WriteRequest request : requests) productIds.add(productIdOf(request));
+        return productIds;
+    }
+
+    @Override
+    public Optional<CartItem> adjustUserCartItem(String userId, CartItemDelta cartItemDelta) {
+        var productId = cartItemDelta.productId();
+        if (writeBehind != null) {
+            // a buffered quantity would overwrite the delta once flushed, adjust it instead
+            Integer buffered = writeBehind.adjust(userId, productId, cartItemDelta.delta());
+            if (buffered != null) {
+                if (buffered < 0) return Optional.empty();
+                var cartItem = new CartItem(productId, buffered);
+                if (cache != null) cache.update(userId, cartItem);
+                return Optional.of(cartItem);
+            }
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseUnsignedInt(dynamoDB.updateItem(cartItemDeltaRequest(userId, cartItemDelta))
+                    .attributes().get("Quantity").n());
+        } catch (ConditionalCheckFailedException e) {
+            return Optional.empty();
+        }
+        if (quantity == 0) {
+            try {
+                dynamoDB.deleteItem(emptyCartItemDeleteRequest(userId, productId));
+            } catch (ConditionalCheckFailedException e) {
+                // units were added in between, the item stays
+            }
+        }
+        var cartItem = new CartItem(productId, quantity);
+        if (cache != null) cache.update(userId, cartItem);
+        return Optional.of(cartItem);
+    }
+
+    /**
+     * Adds the delta with {@code ADD}, returning the new quantity. Fails the condition check if the quantity would
+     * drop below 0 or overflow an int.
+     */
+    static UpdateItemRequest cartItemDeltaRequest(String userId, CartItemDelta cartItemDelta) {
+        var request = UpdateItemRequest.builder()
                 .tableName("Users")
-                .key(Map.of("PK", AttributeValue.fromS(userId), "SK", sk))
-                .updateExpression("SET Quantity = :quantity")
-                .expressionAttributeValues(Map.of(":quantity", AttributeValue.fromN(String.valueOf(cartItem.quantity()))))
-                .build());
+                .key(cartItemKey(userId, cartItemDelta.productId()))
+                .updateExpression("ADD Quantity :delta")
+                .returnValues(ReturnValue.UPDATED_NEW);
+        if (cartItemDelta.delta() > 0) {
+            // the quantity must stay an int, as the buffered quantities do
+            request.conditionExpression("attribute_not_exists(Quantity) OR Quantity <= :maximum")
+                    .expressionAttributeValues(Map.of(
+                            ":delta", AttributeValue.fromN(String.valueOf(cartItemDelta.delta())),
+                            ":maximum", AttributeValue.fromN(String.valueOf(Integer.MAX_VALUE - cartItemDelta.delta()))));
+        } else {
+            // only existing items can lose units, and never more than they have
+            request.conditionExpression("Quantity >= :minimum")
+                    .expressionAttributeValues(Map.of(
+                            ":delta", AttributeValue.fromN(String.valueOf(cartItemDelta.delta())),
+                            ":minimum", AttributeValue.fromN(String.valueOf(-(long) cartItemDelta.delta()))));
+        }
+        return request.build();
+    }
+
+    /**
+     * Deletes the item a delta left at 0, unless units were added in between.
+     */
+    static DeleteItemRequest emptyCartItemDeleteRequest(String userId, String productId) {
+        return DeleteItemRequest.builder()
+                .tableName("Users")
+                .key(cartItemKey(userId, productId))
+                .conditionExpression("Quantity = :zero")
+                .expressionAttributeValues(Map.of(":zero", ZERO))
+                .build();
+    }
+
+    @Override
+    public void clearUserCart(String userId) {
+        // the items a flush in progress writes after the deletes below are deleted by the next flush
+        if (writeBehind != null) writeBehind.discard(userId);
+        var deletes = new ArrayList<WriteRequest>();
+        for (Map<String, AttributeValue> item : queryUserCartKeys(userId)) {
+            deletes.add(cartItemWriteRequest(userId, productIdOf(item.get("SK")), 0));
+        }
+        var unprocessed = batchWriter.writeAll("Users", deletes);
+        if (cache != null) cache.invalidate(userId);
+        if (!unprocessed.isEmpty()) {
+            throw new IllegalStateException("Could not delete %d items of the cart of %s".formatted(unprocessed.size(), userId));
+        }
+    }
+
+    /**
+     * A put of the cart item, or a delete when the quantity is 0, for {@code BatchWriteItem}.
+     */
+    static WriteRequest cartItemWriteRequest(String userId, String productId, int quantity) {
+        var key = cartItemKey(userId, productId);
+        if (quantity == 0) {
+            return WriteRequest.builder().deleteRequest(DeleteRequest.builder().key(key).build()).build();
+        }
+        var item = new HashMap<>(key);
+        item.put("Quantity", AttributeValue.fromN(String.valueOf(quantity)));
+        return WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build();
+    }
+
+    static CartItem decodeCartItem(Map<String, AttributeValue> item) {
+        String productId = productIdOf(item.get("SK"));
+        int quantity = Integer.parseUnsignedInt(item.get("Quantity").n());
+        return new CartItem(productId, quantity);
+    }
+
+    static Map<String, AttributeValue> cartItemKey(String userId, String productId) {
+        return Map.of("PK", AttributeValue.fromS(userId), "SK", AttributeValue.fromS(CART_ITEM_PREFIX.s().concat(productId)));
+    }
+
+    static String productIdOf(AttributeValue sk) {
+        return sk.s().substring(CART_ITEM_PREFIX.s().length());
+    }
+
+    static String productIdOf(WriteRequest request) {
+        var attributes = request.putRequest() != null ? request.putRequest().item() : request.deleteRequest().key();
+        return productIdOf(attributes.get("SK"));
     }
 }
@@ -0,0 +1,90 @@
+package com.sellersphere.cartservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sellersphere.cartservice.CartServiceImpl.CART_ITEM_PREFIX;
+
+/**
+ * Moves the carts stored one item per line ({@code CART_ITEM#<productId>}) to the single item
+ * layout of {@link SingleItemCartServiceImpl}, then deletes the old lines.
+ * <p>
+ * Run once with {@code --cart.migration.enabled=true --spring.main.web-application-type=none}.
+ * A user that already has a single item cart keeps it, as it can only be newer than the old lines.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.migration.enabled", havingValue = "true")
+public final class CartStorageMigration implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CartStorageMigration.class);
+
+    private final DynamoDbClient dynamoDB;
+    private final DynamoDBBatchWriter batchWriter;
+
+    public CartStorageMigration(DynamoDbClient dynamoDB) {
+        this.dynamoDB = dynamoDB;
+        this.batchWriter = new DynamoDBBatchWriter(dynamoDB);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var lines = dynamoDB.scanPaginator(ScanRequest.builder()
+                .tableName("Users")
+                .projectionExpression("PK, SK, Quantity")
+                .filterExpression("begins_with(SK, :cartItemPrefix)")
+                .expressionAttributeValues(Map.of(":cartItemPrefix", CART_ITEM_PREFIX))
+                .build()).items();
+        // the lines of a user are stored, and scanned, next to each other
+        String userId = null;
+        var cart = new HashMap<String, AttributeValue>();
+        int users = 0;
+        for (Map<String, AttributeValue> line : lines) {
+            var lineUserId = line.get("PK").s();
+            if (!lineUserId.equals(userId)) {
+                if (userId != null) {
+                    migrateCart(userId, cart);
+                    users++;
+                }
+                userId = lineUserId;
+                cart.clear();
+            }
+            cart.put(CartServiceImpl.productIdOf(line.get("SK")), line.get("Quantity"));
+        }
+        if (userId != null) {
+            migrateCart(userId, cart);
+            users++;
+        }
+        LOGGER.info("Migrated the carts of {} users to the single item layout", users);
+    }
+
+    private void migrateCart(String userId, Map<String, AttributeValue> cart) {
+        var item = new HashMap<>(SingleItemCartServiceImpl.cartKey(userId));
+        item.put("Items", AttributeValue.fromM(Map.copyOf(cart)));
+        item.put("Version", AttributeValue.fromN("1"));
+        try {
+            dynamoDB.putItem(PutItemRequest.builder()
+                    .tableName("Users")
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(PK)")
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            LOGGER.info("{} already has a single item cart, dropping its {} old cart lines", userId, cart.size());
+        }
+        var deletes = new ArrayList<WriteRequest>(cart.size());
+        for (String productId : cart.keySet()) deletes.add(CartServiceImpl.cartItemWriteRequest(userId, productId, 0));
+        var unprocessed = batchWriter.writeAll("Users", deletes);
+        if (!unprocessed.isEmpty()) {
+            LOGGER.warn("Could not delete {} old cart lines of {}, run the migration again", unprocessed.size(), userId);
+        }
+    }
+}
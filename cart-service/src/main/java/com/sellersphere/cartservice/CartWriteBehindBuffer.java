@@ -0,0 +1,224 @@
+package com.sellersphere.cartservice;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Coalesces the cart updates of a short window, keeping only the last quantity per
+ * (userId, productId), and flushes them with {@code BatchWriteItem}.
+ * <p>
+ * Until a change is written it stays visible to the reads of the same user through {@link #overlay}, on
+ * this instance only: other cart-service instances and the checkout of the order service read DynamoDB
+ * and miss the changes still buffered, so write-behind is only meant for a single instance whose carts
+ * are not checked out within the window.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public final class CartWriteBehindBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CartWriteBehindBuffer.class);
+
+    private final DynamoDBBatchWriter batchWriter;
+    private final ScheduledExecutorService flusher;
+    private final ConcurrentHashMap<String, Map<String, Integer>> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<String, Integer>> inFlight = new ConcurrentHashMap<>();
+    // the users whose changes were discarded while they were written
+    private final Set<String> discarded = ConcurrentHashMap.newKeySet();
+
+    public CartWriteBehindBuffer(DynamoDbClient dynamoDB,
+                                 @Value("${cart.write-behind.window:PT0.2S}") Duration window) {
+        this.batchWriter = new DynamoDBBatchWriter(dynamoDB);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cart-write-behind").factory());
+        flusher.scheduleWithFixedDelay(this::flushSafely, window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void enqueue(String userId, CartItem cartItem) {
+        pending.compute(userId, (user, items) -> {
+            if (items == null) items = new HashMap<>();
+            items.put(cartItem.productId(), cartItem.quantity());
+            return items;
+        });
+    }
+
+    /**
+     * Adds the delta to the quantity of the product if it has a change that is not yet written.
+     *
+     * @return the new quantity, negative if the delta was rejected as the quantity would drop below 0,
+     * or null if the product has no unwritten change and the delta must go to DynamoDB
+     */
+    public Integer adjust(String userId, String productId, int delta) {
+        var result = new Integer[1];
+        pending.compute(userId, (user, items) -> {
+            // flush moves the pending changes to in flight under this same lock, the two can be read together
+            Integer quantity = items != null ? items.get(productId) : null;
+            if (quantity == null) {
+                var inFlightItems = inFlight.get(user);
+                quantity = inFlightItems != null ? inFlightItems.get(productId) : null;
+            }
+            if (quantity == null) return items;
+            long adjusted = (long) quantity + delta;
+            if (adjusted < 0 || adjusted > Integer.MAX_VALUE) {
+                result[0] = -1;
+                return items;
+            }
+            if (items == null) items = new HashMap<>();
+            items.put(productId, (int) adjusted);
+            result[0] = (int) adjusted;
+            return items;
+        });
+        return result[0];
+    }
+
+    /**
+     * Drops the changes of the user that are not yet written, without waiting for a flush in progress.
+     * The changes that flush is writing can land after the cart is cleared, so once it is done the next
+     * flush deletes their items again, unless the user changed them in between.
+     */
+    public void discard(String userId) {
+        // under the lock of the pending changes of the user, which flush holds to move them to in flight
+        pending.compute(userId, (user, items) -> {
+            inFlight.computeIfPresent(user, (flushedUser, flushedItems) -> {
+                discarded.add(user);
+                return null;
+            });
+            return null;
+        });
+    }
+
+    /**
+     * The changes of the user that are not yet written, to be taken before the stored cart is read.
+     * A change flushed in between is then in either the changes or the stored cart.
+     *
+     * @return a copy owned by the caller
+     */
+    public Map<String, Integer> changesOf(String userId) {
+        // read pending before in flight, a change moving between them is then seen at least once
+        var pendingItems = snapshot(pending, userId);
+        var changes = snapshot(inFlight, userId);
+        changes.putAll(pendingItems);
+        return changes;
+    }
+
+    /**
+     * Applies the changes taken by {@link #changesOf} on top of the stored cart read after them.
+     */
+    public static List<CartItem> overlay(List<CartItem> storedCart, Map<String, Integer> changes) {
+        if (changes.isEmpty()) return storedCart;
+        return overlay(storedCart.stream(), new HashMap<>(changes)).toList();
+    }
+
+    /**
+     * Applies the changes of the user that are not yet written on top of the lazily read stored cart.
+     * The changes are taken now, before the stream reads the stored cart.
+     */
+    public Stream<CartItem> overlay(String userId, Stream<CartItem> storedCart) {
+        var changes = changesOf(userId);
+        if (changes.isEmpty()) return storedCart;
+        return overlay(storedCart, changes);
+    }
+
+    private static Stream<CartItem> overlay(Stream<CartItem> storedCart, Map<String, Integer> changes) {
+        var updated = storedCart.<CartItem>mapMulti((item, downstream) -> {
+            Integer quantity = changes.remove(item.productId());
+            if (quantity == null) downstream.accept(item);
+            else if (quantity > 0) downstream.accept(new CartItem(item.productId(), quantity));
+        });
+        // evaluated once the stored cart is consumed, only the changes of new products are left by then
+        var added = Stream.of(changes).flatMap(remaining -> remaining.entrySet().stream()
+                .filter(change -> change.getValue() > 0)
+                .map(change -> new CartItem(change.getKey(), change.getValue())));
+        return Stream.concat(updated, added);
+    }
+
+    /**
+     * Writes the pending changes, called by one thread at a time.
+     */
+    void flush() {
+        var writes = new ArrayList<WriteRequest>();
+        var flushed = new HashMap<String, Map<String, Integer>>();
+        for (String userId : pending.keySet()) {
+            pending.computeIfPresent(userId, (user, items) -> {
+                inFlight.put(user, items);
+                flushed.put(user, items);
+                return null;
+            });
+        }
+        flushed.forEach((userId, items) -> items.forEach((productId, quantity) ->
+                writes.add(CartServiceImpl.cartItemWriteRequest(userId, productId, quantity))));
+        if (writes.isEmpty()) return;
+        try {
+            var unprocessed = batchWriter.writeAll("Users", writes);
+            if (!unprocessed.isEmpty()) {
+                LOGGER.warn("{} cart updates were not processed by DynamoDB, retrying on the next flush", unprocessed.size());
+                requeue(unprocessed);
+            }
+        } catch (RuntimeException e) {
+            // any of the batches may have been written, the puts and deletes can be written again
+            requeue(writes);
+            throw e;
+        } finally {
+            flushed.forEach((userId, items) -> {
+                inFlight.remove(userId, items);
+                // the items may have been written after the cart was cleared, they are deleted again
+                if (discarded.remove(userId)) items.keySet().forEach(productId -> requeue(userId, productId, 0, true));
+            });
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not flush the buffered cart updates, retrying on the next flush", e);
+        }
+    }
+
+    private void requeue(List<WriteRequest> unprocessed) {
+        for (WriteRequest request : unprocessed) {
+            var userId = (request.putRequest() != null ? request.putRequest().item() : request.deleteRequest().key()).get("PK").s();
+            var productId = CartServiceImpl.productIdOf(request);
+            int quantity = request.putRequest() != null ? Integer.parseUnsignedInt(request.putRequest().item().get("Quantity").n()) : 0;
+            requeue(userId, productId, quantity, false);
+        }
+    }
+
+    private void requeue(String userId, String productId, int quantity, boolean afterDiscard) {
+        pending.compute(userId, (user, items) -> {
+            // the failed changes of a discarded user are dropped, the finally of flush deletes their items
+            if (!afterDiscard && discarded.contains(user)) return items;
+            if (items == null) items = new HashMap<>();
+            items.putIfAbsent(productId, quantity); // a newer update wins over the failed one
+            return items;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private static HashMap<String, Integer> snapshot(ConcurrentHashMap<String, Map<String, Integer>> changes, String userId) {
+        var snapshot = new HashMap<String, Integer>();
+        changes.computeIfPresent(userId, (user, items) -> {
+            snapshot.putAll(items);
+            return items;
+        });
+        return snapshot;
+    }
+}
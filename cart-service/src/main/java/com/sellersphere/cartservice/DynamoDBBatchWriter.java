@@ -0,0 +1,59 @@
+package com.sellersphere.cartservice;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes requests with {@code BatchWriteItem}, 25 per call, retrying only the unprocessed items.
+ */
+final class DynamoDBBatchWriter {
+
+    static final int MAX_BATCH_SIZE = 25;
+    static final int MAX_ATTEMPTS = 5;
+    static final long BASE_BACKOFF_MILLIS = 25;
+
+    private final DynamoDbClient dynamoDB;
+
+    DynamoDBBatchWriter(DynamoDbClient dynamoDB) {
+        this.dynamoDB = dynamoDB;
+    }
+
+    /**
+     * @return the requests that were still unprocessed after all the retries
+     */
+    List<WriteRequest> writeAll(String tableName, List<WriteRequest> requests) {
+        var failed = new ArrayList<WriteRequest>();
+        for (int from = 0; from < requests.size(); from += MAX_BATCH_SIZE) {
+            var batch = requests.subList(from, Math.min(from + MAX_BATCH_SIZE, requests.size()));
+            failed.addAll(writeBatch(tableName, batch));
+        }
+        return failed;
+    }
+
+    private List<WriteRequest> writeBatch(String tableName, List<WriteRequest> batch) {
+        var remaining = batch;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !remaining.isEmpty(); attempt++) {
+            if (attempt > 0 && !backoff(attempt)) break;
+            var unprocessed = dynamoDB.batchWriteItem(BatchWriteItemRequest.builder()
+                    .requestItems(Map.of(tableName, remaining))
+                    .build()).unprocessedItems().get(tableName);
+            remaining = unprocessed == null ? List.of() : unprocessed;
+        }
+        return remaining;
+    }
+
+    private static boolean backoff(int attempt) {
+        try {
+            Thread.sleep(BASE_BACKOFF_MILLIS << attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.sellersphere.cartservice;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static com.sellersphere.cartservice.CartItemUpdateResult.Status.*;
+
+/**
+ * Stores the whole cart as a single {@code CART} item under the user partition, with the lines in
+ * the {@code Items} map (productId to quantity) and a {@code Version} bumped on every write.
+ * <p>
+ * A cart is read with one {@code GetItem} and cleared with one {@code DeleteItem}, single lines are
+ * updated in place with map path updates and multi-line updates are optimistic writes on the version.
+ */
+@Service
+@ConditionalOnProperty(name = "cart.storage", havingValue = "single-item")
+public final class SingleItemCartServiceImpl implements CartService {
+
+    public static final AttributeValue CART_SK = AttributeValue.fromS("CART");
+    private static final Map<String, String> NAMES = Map.of("#items", "Items", "#version", "Version");
+    private static final AttributeValue ZERO = AttributeValue.fromN("0");
+    private static final AttributeValue ONE = AttributeValue.fromN("1");
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 5;
+
+    private final DynamoDbClient dynamoDB;
+    private final UserCartCache cache;
+
+    public SingleItemCartServiceImpl(DynamoDbClient dynamoDB, ObjectProvider<UserCartCache> cache) {
+        this.dynamoDB = dynamoDB;
+        this.cache = cache.getIfAvailable();
+    }
+
+    @Override
+    public List<CartItem> getUserCart(String userId) {
+        return cache == null ? loadUserCart(userId) : cache.get(userId, this::loadUserCart);
+    }
+
+    private List<CartItem> loadUserCart(String userId) {
+        var item = dynamoDB.getItem(GetItemRequest.builder()
+                .tableName("Users")
+                .key(cartKey(userId))
+                .projectionExpression("#items")
+                .expressionAttributeNames(Map.of("#items", "Items"))
+                .build()).item();
+        if (item.isEmpty()) return List.of();
+        return decodeItems(item.get("Items").m());
+    }
+
+    @Override
+    public Stream<CartItem> streamUserCart(String userId) {
+        return getUserCart(userId).stream();
+    }
+
+    @Override
+    public void updateUserCart(String userId, CartItem cartItem) {
+        writeCartItem(userId, cartItem);
+        if (cache != null) cache.update(userId, cartItem);
+    }
+
+    private void writeCartItem(String userId, CartItem cartItem) {
+        var names = Map.of("#items", "Items", "#version", "Version", "#product", cartItem.productId());
+        if (cartItem.quantity() == 0) {
+            try {
+                dynamoDB.updateItem(UpdateItemRequest.builder()
+                        .tableName("Users")
+                        .key(cartKey(userId))
+                        .updateExpression("REMOVE #items.#product ADD #version :one")
+                        .conditionExpression("attribute_exists(#items)")
+                        .expressionAttributeNames(names)
+                        .expressionAttributeValues(Map.of(":one", ONE))
+                        .build());
+            } catch (ConditionalCheckFailedException e) {
+                // no cart, nothing to remove
+            }
+            return;
+        }
+        var quantity = AttributeValue.fromN(String.valueOf(cartItem.quantity()));
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            try {
+                dynamoDB.updateItem(UpdateItemRequest.builder()
+                        .tableName("Users")
+                        .key(cartKey(userId))
+                        .updateExpression("SET #items.#product = :quantity ADD #version :one")
+                        .conditionExpression("attribute_exists(#items)")
+                        .expressionAttributeNames(names)
+                        .expressionAttributeValues(Map.of(":quantity", quantity, ":one", ONE))
+                        .build());
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                // the first line of the cart, the map path does not exist yet
+            }
+            if (putCart(userId, Map.of(cartItem.productId(), quantity), null)) return;
+        }
+        throw new IllegalStateException("Could not update the cart of %s after %d attempts".formatted(userId, MAX_OPTIMISTIC_ATTEMPTS));
+    }
+
+    @Override
+    public List<CartItemUpdateResult> updateUserCart(String userId, List<CartItem> cartItems) {
+        var lastUpdates = new LinkedHashMap<String, CartItem>();
+        for (CartItem cartItem : cartItems) lastUpdates.put(cartItem.productId(), cartItem);
+        boolean applied = false;
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS && !applied; attempt++) {
+            var stored = dynamoDB.getItem(GetItemRequest.builder()
+                    .tableName("Users")
+                    .key(cartKey(userId))
+                    .consistentRead(true)
+                    .projectionExpression("#items, #version")
+                    .expressionAttributeNames(NAMES)
+                    .build()).item();
+            var items = new HashMap<String, AttributeValue>(stored.isEmpty() ? Map.of() : stored.get("Items").m());
+            for (CartItem cartItem : lastUpdates.values()) {
+                if (cartItem.quantity() == 0) items.remove(cartItem.productId());
+                else items.put(cartItem.productId(), AttributeValue.fromN(String.valueOf(cartItem.quantity())));
+            }
+            applied = putCart(userId, items, stored.isEmpty() ? null : stored.get("Version"));
+        }
+        if (cache != null) {
+            if (applied) lastUpdates.values().forEach(cartItem -> cache.update(userId, cartItem));
+            else cache.invalidate(userId);
+        }
+        var results = new ArrayList<CartItemUpdateResult>(cartItems.size());
+        for (CartItem cartItem : cartItems) {
+            CartItemUpdateResult.Status status;
+            if (lastUpdates.get(cartItem.productId()) != cartItem) status = SUPERSEDED;
+            else status = applied ? APPLIED : FAILED;
+            results.add(new CartItemUpdateResult(cartItem.productId(), cartItem.quantity(), status));
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<CartItem> adjustUserCartItem(String userId, CartItemDelta cartItemDelta) {
+        var adjusted = addToCartItem(userId, cartItemDelta);
+        if (cache != null) adjusted.ifPresent(cartItem -> cache.update(userId, cartItem));
+        return adjusted;
+    }
+
+    private Optional<CartItem> addToCartItem(String userId, CartItemDelta cartItemDelta) {
+        var productId = cartItemDelta.productId();
+        var names = Map.of("#items", "Items", "#version", "Version", "#product", productId);
+        var delta = AttributeValue.fromN(String.valueOf(cartItemDelta.delta()));
+        var request = UpdateItemRequest.builder()
+                .tableName("Users")
+                .key(cartKey(userId))
+                .updateExpression("SET #items.#product = if_not_exists(#items.#product, :zero) + :delta ADD #version :one")
+                .expressionAttributeNames(names)
+                .returnValues(ReturnValue.UPDATED_NEW);
+        if (cartItemDelta.delta() > 0) {
+            // the quantity must stay an int
+            request.conditionExpression("attribute_exists(#items) AND (attribute_not_exists(#items.#product) OR #items.#product <= :maximum)")
+                    .expressionAttributeValues(Map.of(":zero", ZERO, ":delta", delta, ":one", ONE,
+                            ":maximum", AttributeValue.fromN(String.valueOf(Integer.MAX_VALUE - cartItemDelta.delta()))))
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD);
+        } else {
+            // only existing items can lose units, and never more than they have
+            request.conditionExpression("#items.#product >= :minimum")
+                    .expressionAttributeValues(Map.of(":zero", ZERO, ":delta", delta, ":one", ONE,
+                            ":minimum", AttributeValue.fromN(String.valueOf(-(long) cartItemDelta.delta()))));
+        }
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            int quantity;
+            try {
+                var updated = dynamoDB.updateItem(request.build()).attributes().get("Items").m();
+                quantity = Integer.parseUnsignedInt(updated.get(productId).n());
+            } catch (ConditionalCheckFailedException e) {
+                if (cartItemDelta.delta() <= 0) return Optional.empty();
+                // a cart was there, the quantity would overflow
+                if (e.hasItem() && !e.item().isEmpty()) return Optional.empty();
+                // no cart yet, create it with this first line
+                if (putCart(userId, Map.of(productId, delta), null)) return Optional.of(new CartItem(productId, cartItemDelta.delta()));
+                continue;
+            }
+            if (quantity == 0) {
+                try {
+                    dynamoDB.updateItem(UpdateItemRequest.builder()
+                            .tableName("Users")
+                            .key(cartKey(userId))
+                            .updateExpression("REMOVE #items.#product ADD #version :one")
+                            .conditionExpression("#items.#product = :zero")
+                            .expressionAttributeNames(names)
+                            .expressionAttributeValues(Map.of(":zero", ZERO, ":one", ONE))
+                            .build());
+                } catch (ConditionalCheckFailedException e) {
+                    // units were added in between, the line stays
+                }
+            }
+            return Optional.of(new CartItem(productId, quantity));
+        }
+        throw new IllegalStateException("Could not update the cart of %s after %d attempts".formatted(userId, MAX_OPTIMISTIC_ATTEMPTS));
+    }
+
+    @Override
+    public void clearUserCart(String userId) {
+        dynamoDB.deleteItem(DeleteItemRequest.builder()
+                .tableName("Users")
+                .key(cartKey(userId))
+                .build());
+        if (cache != null) cache.invalidate(userId);
+    }
+
+    /**
+     * Writes the whole cart if it is still at the expected version, or does not exist when the version is null.
+     *
+     * @return false if another write happened in between
+     */
+    private boolean putCart(String userId, Map<String, AttributeValue> items, AttributeValue expectedVersion) {
+        long version = expectedVersion == null ? 0 : Long.parseLong(expectedVersion.n());
+        var item = new HashMap<>(cartKey(userId));
+        item.put("Items", AttributeValue.fromM(items));
+        item.put("Version", AttributeValue.fromN(String.valueOf(version + 1)));
+        var request = PutItemRequest.builder().tableName("Users").item(item);
+        if (expectedVersion == null) {
+            request.conditionExpression("attribute_not_exists(PK)");
+        } else {
+            request.conditionExpression("#version = :expectedVersion")
+                    .expressionAttributeNames(Map.of("#version", "Version"))
+                    .expressionAttributeValues(Map.of(":expectedVersion", expectedVersion));
+        }
+        try {
+            dynamoDB.putItem(request.build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    static Map<String, AttributeValue> cartKey(String userId) {
+        return Map.of("PK", AttributeValue.fromS(userId), "SK", CART_SK);
+    }
+
+    static List<CartItem> decodeItems(Map<String, AttributeValue> items) {
+        if (items.isEmpty()) return List.of();
+        var cart = new ArrayList<CartItem>(items.size());
+        items.forEach((productId, quantity) -> {
+            // a delta leaves the line at 0 until its removal
+            if (!ZERO.n().equals(quantity.n())) cart.add(new CartItem(productId, Integer.parseUnsignedInt(quantity.n())));
+        });
+        return cart;
+    }
+}
@@ -0,0 +1,73 @@
+package com.sellersphere.cartservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Per instance cache of the stored carts, filled on read and updated in place by the writes of this instance.
+ * <p>
+ * Writes through other instances are only seen once the entry expires, after {@code cart.cache.ttl}.
+ * Hit, miss and eviction counts are published as the {@code cache.*} metrics with {@code cache=carts}.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.cache.enabled", havingValue = "true")
+public final class UserCartCache {
+
+    private final Cache<String, List<CartItem>> carts;
+
+    public UserCartCache(@Value("${cart.cache.max-size:100000}") long maxSize,
+                         @Value("${cart.cache.ttl:PT5S}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, carts, "carts");
+    }
+
+    /**
+     * The cached cart of the user, loaded once by concurrent misses.
+     */
+    public List<CartItem> get(String userId, Function<String, List<CartItem>> loader) {
+        return carts.get(userId, user -> List.copyOf(loader.apply(user)));
+    }
+
+    public Optional<List<CartItem>> getIfPresent(String userId) {
+        return Optional.ofNullable(carts.getIfPresent(userId));
+    }
+
+    /**
+     * Replaces the quantity of the item in the cached cart, a quantity of 0 removes it.
+     */
+    public void update(String userId, CartItem cartItem) {
+        carts.asMap().computeIfPresent(userId, (user, cart) -> {
+            var updated = new ArrayList<CartItem>(cart.size() + 1);
+            boolean found = false;
+            for (CartItem item : cart) {
+                if (!item.productId().equals(cartItem.productId())) updated.add(item);
+                else {
+                    found = true;
+                    if (cartItem.quantity() > 0) updated.add(cartItem);
+                }
+            }
+            if (!found && cartItem.quantity() > 0) updated.add(cartItem);
+            return List.copyOf(updated);
+        });
+    }
+
+    public void invalidate(String userId) {
+        carts.invalidate(userId);
+    }
+}
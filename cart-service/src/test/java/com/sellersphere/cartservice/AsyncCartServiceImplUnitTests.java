@@ -0,0 +1,85 @@
+package com.sellersphere.cartservice;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncCartServiceImplUnitTests {
+
+    static final String PRODUCT = "66fabd5c84e4461f161eb753";
+
+    final StubDynamoDB dynamoDB = new StubDynamoDB();
+    final AsyncCartServiceImpl cartService = new AsyncCartServiceImpl(dynamoDB, "item-per-line");
+
+    @Test
+    @DisplayName("A delta that fails its condition is a conflict")
+    void aDeltaThatFailsItsConditionIsAConflict() throws Exception {
+        dynamoDB.updateItem = request -> CompletableFuture.failedFuture(ConditionalCheckFailedException.builder().build());
+
+        assertThat(cartService.adjustUserCartItem("USER#a", new CartItemDelta(PRODUCT, -1)).get()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A delta that empties the item deletes it, unless units were added in between")
+    void aDeltaThatEmptiesTheItemDeletesIt() throws Exception {
+        dynamoDB.updateItem = request -> CompletableFuture.completedFuture(UpdateItemResponse.builder()
+                .attributes(Map.of("Quantity", AttributeValue.fromN("0"))).build());
+        dynamoDB.deleteItem = request -> CompletableFuture.failedFuture(ConditionalCheckFailedException.builder().build());
+
+        assertThat(cartService.adjustUserCartItem("USER#a", new CartItemDelta(PRODUCT, -2)).get())
+                .isEqualTo(Optional.of(new CartItem(PRODUCT, 0)));
+    }
+
+    @Test
+    @DisplayName("Other failures of a delta fail it")
+    void otherFailuresOfADeltaFailIt() {
+        dynamoDB.updateItem = request -> CompletableFuture.failedFuture(SdkClientException.create("timeout"));
+
+        assertThatThrownBy(() -> cartService.adjustUserCartItem("USER#a", new CartItemDelta(PRODUCT, 1)).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SdkClientException.class);
+    }
+
+    @Test
+    @DisplayName("Only the item per line storage is supported")
+    void onlyTheItemPerLineStorageIsSupported() {
+        assertThatThrownBy(() -> new AsyncCartServiceImpl(dynamoDB, "single-item"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    static final class StubDynamoDB implements DynamoDbAsyncClient {
+
+        Function<UpdateItemRequest, CompletableFuture<UpdateItemResponse>> updateItem;
+        Function<DeleteItemRequest, CompletableFuture<DeleteItemResponse>> deleteItem;
+
+        @Override
+        public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+            return updateItem.apply(request);
+        }
+
+        @Override
+        public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+            return deleteItem.apply(request);
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
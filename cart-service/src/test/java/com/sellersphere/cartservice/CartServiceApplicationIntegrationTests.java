@@ -21,6 +21,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.File;
 import java.time.Instant;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -114,7 +115,102 @@ class CartServiceApplicationIntegrationTests {
 				.isEmpty();
 	}
 
+	@Test
+	@DisplayName("Authenticated users can update many items of their carts at once")
+	void authenticatedUsersCanUpdateManyItemsOfTheirCartsAtOnce() {
+		var userAccessToken = createUserAccessToken("john@jmail.com");
+
+		var cartItems = List.of(new CartItem(VALID_PRODUCT_ID, 2), new CartItem(OTHER_VALID_PRODUCT_ID, 3));
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(cartItems)
+				.when().patch("/cart/items")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("status", String.class))
+				.containsExactly("APPLIED", "APPLIED");
+
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.when().get("/cart")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("$", CartItem.class))
+				.containsExactlyInAnyOrderElementsOf(cartItems);
+	}
+
+	@Test
+	@DisplayName("Authenticated users can clear their carts")
+	void authenticatedUsersCanClearTheirCarts() {
+		var userAccessToken = createUserAccessToken("mary@mmail.com");
+
+		given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(List.of(new CartItem(VALID_PRODUCT_ID, 1), new CartItem(OTHER_VALID_PRODUCT_ID, 4)))
+				.when().patch("/cart/items")
+				.then().statusCode(200);
+
+		given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.when().delete("/cart")
+				.then().statusCode(200);
+
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.when().get("/cart")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("$", CartItem.class))
+				.isEmpty();
+	}
+
+	@Test
+	@DisplayName("Authenticated users can add and remove units of a cart item without knowing its quantity")
+	void authenticatedUsersCanAdjustTheQuantityOfACartItem() {
+		var userAccessToken = createUserAccessToken("nick@nmail.com");
+
+		for (int delta : new int[]{ 2, 3 }) {
+			given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+					.contentType(ContentType.JSON).body(new CartItemDelta(VALID_PRODUCT_ID, delta))
+					.when().patch("/cart/delta")
+					.then().statusCode(200);
+		}
+
+		given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(new CartItemDelta(VALID_PRODUCT_ID, -6))
+				.when().patch("/cart/delta")
+				.then().statusCode(409);
+
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(new CartItemDelta(VALID_PRODUCT_ID, -5))
+				.when().patch("/cart/delta")
+				.then().statusCode(200)
+				.extract().as(CartItem.class))
+				.isEqualTo(new CartItem(VALID_PRODUCT_ID, 0));
+
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.when().get("/cart")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("$", CartItem.class))
+				.isEmpty();
+	}
+
+	@Test
+	@DisplayName("Adding units beyond the largest quantity is a conflict")
+	void addingUnitsBeyondTheLargestQuantityIsAConflict() {
+		var userAccessToken = createUserAccessToken("olga@omail.com");
+
+		given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(new CartItemDelta(VALID_PRODUCT_ID, Integer.MAX_VALUE))
+				.when().patch("/cart/delta")
+				.then().statusCode(200);
+
+		given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.contentType(ContentType.JSON).body(new CartItemDelta(VALID_PRODUCT_ID, 1))
+				.when().patch("/cart/delta")
+				.then().statusCode(409);
+
+		assertThat(given().port(cartService).header("Authorization", "Bearer ".concat(userAccessToken))
+				.when().get("/cart")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("$", CartItem.class))
+				.containsExactly(new CartItem(VALID_PRODUCT_ID, Integer.MAX_VALUE));
+	}
+
 	static final String VALID_PRODUCT_ID = "66fabd5c84e4461f161eb753"; // valid mongodb objectid (24 chars)
+	static final String OTHER_VALID_PRODUCT_ID = "66fabd5c84e4461f161eb754"; // another valid mongodb objectid
 
 	@Value("${security.jwt.issuer}")
 	String jwtIssuer;
@@ -0,0 +1,147 @@
+package com.sellersphere.cartservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartWriteBehindBufferUnitTests {
+
+    static final String PRODUCT = "66fabd5c84e4461f161eb753";
+    static final String OTHER_PRODUCT = "66fabd5c84e4461f161eb754";
+
+    final StubDynamoDB dynamoDB = new StubDynamoDB();
+    // flushed only by the tests
+    final CartWriteBehindBuffer buffer = new CartWriteBehindBuffer(dynamoDB, Duration.ofHours(1));
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        dynamoDB.batchWrite = dynamoDB::write;
+        buffer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Changes are written by the next flush when a flush fails")
+    void changesAreWrittenByTheNextFlushWhenAFlushFails() {
+        buffer.enqueue("USER#a", new CartItem(PRODUCT, 2));
+        buffer.enqueue("USER#a", new CartItem(OTHER_PRODUCT, 3));
+        dynamoDB.batchWrite = request -> {
+            // a newer change of the same product while the batch is written
+            buffer.enqueue("USER#a", new CartItem(PRODUCT, 7));
+            throw SdkClientException.create("throttled");
+        };
+
+        assertThatThrownBy(buffer::flush).isInstanceOf(SdkClientException.class);
+        assertThat(buffer.changesOf("USER#a")).isEqualTo(Map.of(PRODUCT, 7, OTHER_PRODUCT, 3));
+
+        dynamoDB.batchWrite = dynamoDB::write;
+        buffer.flush();
+        assertThat(dynamoDB.written).extracting(CartWriteBehindBufferUnitTests::cartItemOf)
+                .containsExactlyInAnyOrder(new CartItem(PRODUCT, 7), new CartItem(OTHER_PRODUCT, 3));
+        assertThat(buffer.changesOf("USER#a")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Discarding the changes of a user does not wait for their flush in progress, the next flush deletes what it wrote")
+    void discardingDoesNotWaitForTheFlushInProgress() throws Exception {
+        buffer.enqueue("USER#a", new CartItem(PRODUCT, 2));
+        buffer.enqueue("USER#b", new CartItem(OTHER_PRODUCT, 3));
+        var writing = new CountDownLatch(1);
+        var written = new CountDownLatch(1);
+        dynamoDB.batchWrite = request -> {
+            writing.countDown();
+            await(written);
+            return dynamoDB.write(request);
+        };
+        var flush = CompletableFuture.runAsync(buffer::flush);
+        await(writing);
+
+        buffer.discard("USER#a");
+        assertThat(buffer.changesOf("USER#a")).isEmpty();
+        written.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        dynamoDB.batchWrite = dynamoDB::write;
+        dynamoDB.written.clear();
+        buffer.flush();
+        assertThat(dynamoDB.written).hasSize(1).allSatisfy(request ->
+                assertThat(request.deleteRequest().key().get("SK")).isEqualTo(CartServiceImpl.cartItemKey("USER#a", PRODUCT).get("SK")));
+    }
+
+    @Test
+    @DisplayName("The failed changes of a discarded user are not written again, a change made after the discard is")
+    void theFailedChangesOfADiscardedUserAreNotWrittenAgain() throws Exception {
+        buffer.enqueue("USER#a", new CartItem(PRODUCT, 2));
+        buffer.enqueue("USER#a", new CartItem(OTHER_PRODUCT, 3));
+        var writing = new CountDownLatch(1);
+        var failing = new CountDownLatch(1);
+        dynamoDB.batchWrite = request -> {
+            writing.countDown();
+            await(failing);
+            throw SdkClientException.create("throttled");
+        };
+        var flush = CompletableFuture.runAsync(() -> assertThatThrownBy(buffer::flush).isInstanceOf(SdkClientException.class));
+        await(writing);
+
+        buffer.discard("USER#a");
+        buffer.enqueue("USER#a", new CartItem(OTHER_PRODUCT, 5));
+        failing.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        assertThat(buffer.changesOf("USER#a")).isEqualTo(Map.of(PRODUCT, 0, OTHER_PRODUCT, 5));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static CartItem cartItemOf(WriteRequest request) {
+        var item = request.putRequest().item();
+        return new CartItem(CartServiceImpl.productIdOf(item.get("SK")), Integer.parseInt(item.get("Quantity").n()));
+    }
+
+    static final class StubDynamoDB implements DynamoDbClient {
+
+        final List<WriteRequest> written = new CopyOnWriteArrayList<>();
+        volatile Function<BatchWriteItemRequest, BatchWriteItemResponse> batchWrite = this::write;
+
+        BatchWriteItemResponse write(BatchWriteItemRequest request) {
+            written.addAll(request.requestItems().get("Users"));
+            return BatchWriteItemResponse.builder().unprocessedItems(Map.of()).build();
+        }
+
+        @Override
+        public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+            return batchWrite.apply(request);
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
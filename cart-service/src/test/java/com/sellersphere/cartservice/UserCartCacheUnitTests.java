@@ -0,0 +1,51 @@
+package com.sellersphere.cartservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCartCacheUnitTests {
+
+    static final String PRODUCT = "66fabd5c84e4461f161eb753";
+    static final String OTHER_PRODUCT = "66fabd5c84e4461f161eb754";
+    static final String NEW_PRODUCT = "66fabd5c84e4461f161eb755";
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final UserCartCache cache = new UserCartCache(100, Duration.ofMinutes(1), meterRegistry);
+
+    @Test
+    @DisplayName("A cached cart is loaded once")
+    void aCachedCartIsLoadedOnce() {
+        cache.get("USER#a", user -> List.of(new CartItem(PRODUCT, 1)));
+
+        assertThat(cache.get("USER#a", user -> { throw new AssertionError("loaded twice"); }))
+                .containsExactly(new CartItem(PRODUCT, 1));
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "carts").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Updates replace, add and remove items of the cached cart")
+    void updatesReplaceAddAndRemoveItemsOfTheCachedCart() {
+        cache.get("USER#a", user -> List.of(new CartItem(PRODUCT, 1), new CartItem(OTHER_PRODUCT, 2)));
+
+        cache.update("USER#a", new CartItem(PRODUCT, 5));
+        cache.update("USER#a", new CartItem(OTHER_PRODUCT, 0));
+        cache.update("USER#a", new CartItem(NEW_PRODUCT, 3));
+
+        assertThat(cache.getIfPresent("USER#a")).contains(List.of(new CartItem(PRODUCT, 5), new CartItem(NEW_PRODUCT, 3)));
+    }
+
+    @Test
+    @DisplayName("Updates of a cart that is not cached do not cache it")
+    void updatesOfACartThatIsNotCachedDoNotCacheIt() {
+        cache.update("USER#a", new CartItem(PRODUCT, 5));
+
+        assertThat(cache.getIfPresent("USER#a")).isEmpty();
+    }
+}
@@ -3,25 +3,36 @@ package com.sellersphere.orderservice;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.sellersphere.authorization.JwtAuthorizationFilter;
+import com.sellersphere.orderservice.logic.StockDeltaFeed;
 import jakarta.servlet.Filter;
 import jakarta.servlet.http.HttpServletRequest;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.util.backoff.FixedBackOff;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -77,4 +88,42 @@ public class OrderServiceApplication {
 	public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory){
 		return new KafkaTemplate<>(producerFactory);
 	}
+
+	/**
+	 * Batch listeners whose poll returns once stock.feed.window elapsed or stock.feed.max-deltas arrived,
+	 * the window over which StockDeltaFeed coalesces the deltas. A window holds at most
+	 * StockDeltaFeed.MAX_WINDOW_DELTAS deltas, as their sum must fit the int quantity of a product.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "stock.feed.enabled", havingValue = "true")
+	public ConcurrentKafkaListenerContainerFactory<String, String> stockDeltaListenerContainerFactory(
+			@Value("${kafka.bootstrap-servers}") String bootstrapServers,
+			@Value("${stock.feed.window:PT0.2S}") Duration window,
+			@Value("${stock.feed.max-deltas:5000}") int maxDeltas,
+			@Value("${stock.feed.max-attempts:5}") int maxAttempts,
+			@Value("${stock.feed.retry-delay:PT1S}") Duration retryDelay,
+			KafkaTemplate<String, String> kafkaTemplate){
+		if (maxDeltas < 1 || maxDeltas > StockDeltaFeed.MAX_WINDOW_DELTAS) {
+			throw new IllegalArgumentException("stock.feed.max-deltas must be between 1 and %d, so that the deltas of a window cannot overflow the stock"
+					.formatted(StockDeltaFeed.MAX_WINDOW_DELTAS));
+		}
+		var configs = Map.<String, Object>of(
+				ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+				ConsumerConfig.GROUP_ID_CONFIG, "stock-feed",
+				// a new group starts from the deltas already on the topic
+				ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+				ConsumerConfig.FETCH_MIN_BYTES_CONFIG, Integer.MAX_VALUE,
+				ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, (int) window.toMillis(),
+				ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxDeltas
+		);
+		var deserializer = new StringDeserializer();
+		var factory = new ConcurrentKafkaListenerContainerFactory<String, String>();
+		factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(configs, deserializer, deserializer));
+		factory.setBatchListener(true);
+		// the writes of a window are idempotent, a failed window is retried whole and then dead-lettered
+		var deadLetters = new DeadLetterPublishingRecoverer(kafkaTemplate,
+				(record, e) -> new TopicPartition(record.topic() + ".DLT", -1));
+		factory.setCommonErrorHandler(new DefaultErrorHandler(deadLetters, new FixedBackOff(retryDelay.toMillis(), maxAttempts - 1)));
+		return factory;
+	}
 }
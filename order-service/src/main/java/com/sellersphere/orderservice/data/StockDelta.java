@@ -0,0 +1,7 @@
+package com.sellersphere.orderservice.data;
+
+/**
+ * A change of the stock of a product reported by a warehouse, negative when units left it.
+ */
+public record StockDelta(String productId, int delta) {
+}
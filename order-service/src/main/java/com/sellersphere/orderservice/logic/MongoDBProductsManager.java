@@ -114,9 +114,10 @@ public final class MongoDBProductsManager implements ProductsManager {
         int stock = stockItem.getInteger("quantity");
         if (stock < requiredStock) throw new OrderPlacementException.NotEnoughProductStockException(productId.toHexString());
         int version = stockItem.getInteger("version");
+        // sold counts the units ever ordered, the popularity of the product suggestions
         var result = products.updateOne(session,
                 Filters.and(eq("_id", productId), eq("version", version)),
-                Updates.combine(set("quantity", stock - requiredStock), inc("version", 1)));
+                Updates.combine(set("quantity", stock - requiredStock), inc("sold", requiredStock), inc("version", 1)));
         return result.getModifiedCount() > 0;
     }
 }
@@ -0,0 +1,181 @@
+package com.sellersphere.orderservice.logic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.sellersphere.orderservice.data.StockDelta;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * Applies the stock changes the warehouses push on the {@code stock.feed.topic} Kafka topic.
+ * <p>
+ * Every poll of the topic is one window: the deltas of a product are written as a single update that adds
+ * them to its quantity and bumps its version, so an order placement that read the stock before fails its
+ * optimistic check and retries on the new stock. A window is one unordered bulk write and the next poll
+ * waits for it, so the feed never has more than one write in flight however fast the deltas arrive.
+ * <p>
+ * Every product records in {@code stockFeedOffsets} the offset of the last delta it applied per topic and
+ * partition, and an update only adds the deltas past it. Writing a window again, after a failure whose
+ * outcome is unknown or when Kafka delivers it again, therefore never applies a delta twice. A recorded
+ * offset at or past the end of its partition was not written by this topic, as when the topic was recreated
+ * or its offsets reset, and would silently skip the new deltas: the window fails instead. A failed window is
+ * rethrown to the error handler of the listener container, which retries it and then dead-letters it.
+ */
+@Component
+@ConditionalOnProperty(name = "stock.feed.enabled", havingValue = "true")
+public final class StockDeltaFeed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockDeltaFeed.class);
+    static final int MAX_DELTA = 100_000;
+    /** The most deltas in a window, stock.feed.max-deltas, whose sum still fits an int. */
+    public static final int MAX_WINDOW_DELTAS = Integer.MAX_VALUE / MAX_DELTA;
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private final MongoCollection<Document> products;
+    private final ObjectMapper objectMapper;
+
+    public StockDeltaFeed(MongoClient mongoClient, ObjectMapper objectMapper) {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(topics = "${stock.feed.topic:stock-deltas}", containerFactory = "stockDeltaListenerContainerFactory")
+    public void onStockDeltas(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+        onStockDeltas(records, consumer::endOffsets);
+    }
+
+    /**
+     * @param endOffsets the end offsets of the partitions, only asked for when some products applied none of their deltas
+     */
+    public void onStockDeltas(List<ConsumerRecord<String, String>> records,
+                              Function<Collection<TopicPartition>, Map<TopicPartition, Long>> endOffsets) {
+        var windows = coalesce(records);
+        if (windows.isEmpty()) return;
+        var updates = new ArrayList<UpdateOneModel<Document>>(windows.size());
+        windows.forEach((product, deltas) -> updates.add(applyDeltas(product, deltas)));
+        var result = products.bulkWrite(updates, UNORDERED);
+        if (result.getMatchedCount() < updates.size()) {
+            checkOffsetsBehindTheTopic(windows.keySet(), endOffsets);
+            LOGGER.info("{} stock delta windows were for unknown products or already applied", updates.size() - result.getMatchedCount());
+        }
+    }
+
+    /**
+     * Fails if a product recorded an offset its partition has not reached, the window then skipped deltas
+     * it never applied. Once the bulk write is done every offset the window recorded is behind the end.
+     */
+    private void checkOffsetsBehindTheTopic(Collection<ProductPartition> windows,
+                                            Function<Collection<TopicPartition>, Map<TopicPartition, Long>> endOffsets) {
+        var productIds = new HashSet<ObjectId>();
+        var partitions = new HashSet<TopicPartition>();
+        for (ProductPartition window : windows) {
+            productIds.add(window.productId());
+            partitions.add(new TopicPartition(window.topic(), window.partition()));
+        }
+        var recorded = new LinkedHashMap<ObjectId, Document>();
+        products.find(in("_id", productIds)).projection(include("stockFeedOffsets"))
+                .forEach(product -> recorded.put(product.getObjectId("_id"), product.get("stockFeedOffsets", Document.class)));
+        var ends = endOffsets.apply(partitions);
+        var ahead = new ArrayList<String>();
+        for (ProductPartition window : windows) {
+            var offsets = recorded.get(window.productId());
+            var offset = offsets == null ? null : offsets.get(offsetKey(window.topic(), window.partition()));
+            Long end = ends.get(new TopicPartition(window.topic(), window.partition()));
+            if (offset instanceof Number number && end != null && number.longValue() >= end) {
+                ahead.add("%s at %d, %s-%d ends at %d".formatted(window.productId(), number.longValue(), window.topic(), window.partition(), end));
+            }
+        }
+        if (!ahead.isEmpty()) {
+            throw new IllegalStateException("Stock feed offsets past the end of their partition, was the topic recreated? " + ahead);
+        }
+    }
+
+    /**
+     * A product and the topic partition its deltas were read from, offsets are only comparable within a partition.
+     */
+    record ProductPartition(ObjectId productId, String topic, int partition) {
+    }
+
+    /**
+     * The key of the offset of a topic partition in stockFeedOffsets. A topic name cannot hold a ':',
+     * its '.' are replaced by one as field names cannot hold a '.'.
+     */
+    static String offsetKey(String topic, int partition) {
+        return topic.replace('.', ':') + ':' + partition;
+    }
+
+    record OffsetDelta(long offset, int delta) {
+    }
+
+    /**
+     * The deltas per product and partition, in offset order. Deltas that cancel out are still
+     * written, the ones an earlier write applied must not be summed with the others.
+     */
+    Map<ProductPartition, List<OffsetDelta>> coalesce(List<ConsumerRecord<String, String>> records) {
+        var windows = new LinkedHashMap<ProductPartition, List<OffsetDelta>>();
+        for (ConsumerRecord<String, String> record : records) {
+            StockDelta stockDelta;
+            try {
+                stockDelta = objectMapper.readValue(record.value(), StockDelta.class);
+            } catch (JsonProcessingException e) {
+                LOGGER.warn("Skipping malformed stock delta {}", record.value());
+                continue;
+            }
+            if (stockDelta.productId() == null || !ObjectId.isValid(stockDelta.productId())
+                    || Math.abs(stockDelta.delta()) > MAX_DELTA) {
+                LOGGER.warn("Skipping invalid stock delta {}", record.value());
+                continue;
+            }
+            var product = new ProductPartition(new ObjectId(stockDelta.productId()), record.topic(), record.partition());
+            windows.computeIfAbsent(product, _ -> new ArrayList<>()).add(new OffsetDelta(record.offset(), stockDelta.delta()));
+        }
+        return windows;
+    }
+
+    /**
+     * Adds the deltas past the offset the product last applied on the partition, bumps its version and records
+     * the offset of the last delta. Matches nothing if the product already applied them all. The quantity stops
+     * at 0, a warehouse cannot take out more units than the product has in stock.
+     */
+    static UpdateOneModel<Document> applyDeltas(ProductPartition product, List<OffsetDelta> deltas) {
+        var offsetField = "stockFeedOffsets." + offsetKey(product.topic(), product.partition());
+        long lastOffset = deltas.getLast().offset();
+        var pairs = new ArrayList<List<Number>>(deltas.size());
+        for (OffsetDelta delta : deltas) pairs.add(List.of(delta.offset(), delta.delta()));
+        var appliedOffset = new Document("$ifNull", List.of("$" + offsetField, -1L));
+        var newDeltas = new Document("$reduce", new Document("input", pairs)
+                .append("initialValue", 0)
+                .append("in", new Document("$cond", List.of(
+                        new Document("$gt", List.of(new Document("$arrayElemAt", List.of("$$this", 0)), appliedOffset)),
+                        new Document("$add", List.of("$$value", new Document("$arrayElemAt", List.of("$$this", 1)))),
+                        "$$value"))));
+        return new UpdateOneModel<>(and(eq("_id", product.productId()), not(gte(offsetField, lastOffset))),
+                List.of(new Document("$set", new Document("quantity",
+                                new Document("$max", List.of(0, new Document("$add", List.of("$quantity", newDeltas)))))
+                        .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0)), 1)))
+                        .append(offsetField, lastOffset))));
+    }
+}
@@ -0,0 +1,46 @@
+package com.sellersphere.orderservice.repository;
+
+import com.sellersphere.orderservice.data.CartItem;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads carts stored by the cart-service as a single {@code CART} item with an {@code Items} map.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.storage", havingValue = "single-item")
+public final class DynamoDBSingleItemCartLoader implements UserShoppingCartLoader {
+
+    public static final AttributeValue CART_SK = AttributeValue.fromS("CART");
+    private final DynamoDbClient dynamoDB;
+
+    public DynamoDBSingleItemCartLoader(DynamoDbClient dynamoDB) {
+        this.dynamoDB = dynamoDB;
+    }
+
+    @Override
+    public List<CartItem> loadUserCart(String userId) {
+        var item = dynamoDB.getItem(GetItemRequest.builder()
+                .tableName("Users")
+                .key(Map.of("PK", AttributeValue.fromS(userId), "SK", CART_SK))
+                .consistentRead(true)
+                .projectionExpression("#items")
+                .expressionAttributeNames(Map.of("#items", "Items"))
+                .build()).item();
+        if (item.isEmpty()) return List.of();
+        var cartItems = new ArrayList<CartItem>();
+        item.get("Items").m().forEach((productId, quantity) -> {
+            int units = Integer.parseUnsignedInt(quantity.n());
+            // a delta update of the cart-service leaves the line at 0 until its removal
+            if (units > 0) cartItems.add(new CartItem(productId, units));
+        });
+        return cartItems;
+    }
+}
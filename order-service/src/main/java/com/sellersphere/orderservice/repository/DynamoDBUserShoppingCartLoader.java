@@ -1,6 +1,7 @@
 package com.sellersphere.orderservice.repository;
 
 import com.sellersphere.orderservice.data.CartItem;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
@@ -11,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 
 @Component
+@ConditionalOnProperty(name = "cart.storage", havingValue = "item-per-line", matchIfMissing = true)
 public final class DynamoDBUserShoppingCartLoader implements UserShoppingCartLoader {
 
     public static final AttributeValue CART_ITEM_PREFIX = AttributeValue.fromS("CART_ITEM#");
@@ -22,15 +24,17 @@ public final class DynamoDBUserShoppingCartLoader implements UserShoppingCartLoa
 
     @Override
     public List<CartItem> loadUserCart(String userId) {
-        var items = dynamoDB.query(QueryRequest.builder()
+        var items = dynamoDB.queryPaginator(QueryRequest.builder()
                 .tableName("Users")
                 .keyConditionExpression("PK = :userId AND begins_with(SK, :cartItemPrefix)")
                 .projectionExpression("SK, Quantity")
+                // a delta update of the cart-service leaves the item at 0 until its delete
+                .filterExpression("Quantity > :zero")
                 .expressionAttributeValues(Map.of(
-                        ":userId", AttributeValue.fromS(userId), ":cartItemPrefix", CART_ITEM_PREFIX))
+                        ":userId", AttributeValue.fromS(userId), ":cartItemPrefix", CART_ITEM_PREFIX,
+                        ":zero", AttributeValue.fromN("0")))
                 .build()).items();
-        if (items.isEmpty()) return List.of();
-        var cartItems = new ArrayList<CartItem>(items.size());
+        var cartItems = new ArrayList<CartItem>();
         for (Map<String, AttributeValue> item : items) cartItems.add(decodeItem(item));
         return cartItems;
     }
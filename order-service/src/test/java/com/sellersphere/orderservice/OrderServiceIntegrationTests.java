@@ -6,15 +6,20 @@ import com.mongodb.client.MongoClient;
 import com.sellersphere.orderservice.data.OrderDetails;
 import com.sellersphere.orderservice.data.OrderItem;
 import com.sellersphere.orderservice.data.UserOrderView;
+import com.sellersphere.orderservice.logic.StockDeltaFeed;
 import io.restassured.http.ContentType;
 import io.restassured.http.Header;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.ComposeContainer;
@@ -23,9 +28,15 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.File;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @Testcontainers
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
@@ -33,7 +44,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 		"AWS_ACCESS_KEY_ID=access",
 		"AWS_SECRET_ACCESS_KEY=secret",
 		"security.jwt.secret=secret",
-		"kafka.topic=placed-orders"
+		"kafka.topic=placed-orders",
+		"stock.feed.enabled=true"
 })
 class OrderServiceIntegrationTests {
 
@@ -56,6 +68,13 @@ class OrderServiceIntegrationTests {
 	int orderService;
 	@Autowired
 	MongoClient mongoClient;
+	@Autowired
+	KafkaTemplate<String, String> kafka;
+	@Autowired
+	StockDeltaFeed stockDeltaFeed;
+
+	static final Function<Collection<TopicPartition>, Map<TopicPartition, Long>> REPLAYED_TOPIC_ENDS =
+			partitions -> Map.of(new TopicPartition("replayed-stock-deltas", 0), 44L);
 	int cartService;
 
 	@Test
@@ -85,6 +104,96 @@ class OrderServiceIntegrationTests {
 			assertThat(view.totalPrice()).isEqualTo(orderDetials.items().stream().mapToInt(OrderItem::price).sum());
 			assertThat(view.placedAt()).isEqualTo(orderDetials.placedAt());
 		});
+
+		var product = mongoClient.getDatabase("sellersphere").getCollection("products")
+				.find(new Document("_id", new ObjectId(productId))).first();
+		assertThat(product.getInteger("quantity")).isEqualTo(10);
+		assertThat(product.getInteger("sold")).isEqualTo(5);
+	}
+
+	@Test
+	void stockDeltasAreAppliedAndBumpTheVersion() throws Exception {
+		var productId = insertProductIntoMongo("laptop", "Y-Laptop", 10, 999_99);
+
+		for (int delta : new int[]{ 5, -3, 4 }) {
+			kafka.send("stock-deltas", productId, """
+					{ "productId": "%s", "delta": %d }
+					""".formatted(productId, delta)).get();
+		}
+
+		var products = mongoClient.getDatabase("sellersphere").getCollection("products");
+		Document product;
+		var deadline = Instant.now().plusSeconds(30);
+		do {
+			Thread.sleep(200);
+			product = products.find(new Document("_id", new ObjectId(productId))).first();
+		} while (product.getInteger("quantity") != 16 && Instant.now().isBefore(deadline));
+
+		assertThat(product.getInteger("quantity")).isEqualTo(16);
+		assertThat(product.getInteger("version")).isGreaterThan(1);
+	}
+
+	@Test
+	void aStockDeltaWindowWrittenAgainIsOnlyAppliedOnce() {
+		var productId = insertProductIntoMongo("laptop", "Z-Laptop", 10, 999_99);
+		var delta = new ConsumerRecord<>("replayed-stock-deltas", 0, 42L, productId, """
+				{ "productId": "%s", "delta": -4 }
+				""".formatted(productId));
+		var nextDelta = new ConsumerRecord<>("replayed-stock-deltas", 0, 43L, productId, """
+				{ "productId": "%s", "delta": 7 }
+				""".formatted(productId));
+
+		stockDeltaFeed.onStockDeltas(List.of(delta), REPLAYED_TOPIC_ENDS);
+		// delivered again together with the next delta, as when its offset was not committed
+		stockDeltaFeed.onStockDeltas(List.of(delta, nextDelta), REPLAYED_TOPIC_ENDS);
+		stockDeltaFeed.onStockDeltas(List.of(delta, nextDelta), REPLAYED_TOPIC_ENDS);
+
+		var product = mongoClient.getDatabase("sellersphere").getCollection("products")
+				.find(new Document("_id", new ObjectId(productId))).first();
+		assertThat(product.getInteger("quantity")).isEqualTo(13);
+		assertThat(product.getInteger("version")).isEqualTo(3);
+	}
+
+	@Test
+	void aStockDeltaWindowTakingOutMoreThanTheStockLeavesNone() {
+		var productId = insertProductIntoMongo("laptop", "N-Laptop", 10, 999_99);
+		var records = new ArrayList<ConsumerRecord<String, String>>();
+		for (int delta : new int[]{ -8, 3, -9 }) {
+			records.add(new ConsumerRecord<>("replayed-stock-deltas", 0, 40L + records.size(), productId, """
+					{ "productId": "%s", "delta": %d }
+					""".formatted(productId, delta)));
+		}
+
+		stockDeltaFeed.onStockDeltas(records, REPLAYED_TOPIC_ENDS);
+
+		var product = mongoClient.getDatabase("sellersphere").getCollection("products")
+				.find(new Document("_id", new ObjectId(productId))).first();
+		assertThat(product.getInteger("quantity")).isEqualTo(0);
+		assertThat(product.getInteger("version")).isEqualTo(2);
+	}
+
+	@Test
+	void aStockDeltaBehindTheRecordedOffsetOfARecreatedTopicFailsItsWindow() {
+		var productId = insertProductIntoMongo("laptop", "R-Laptop", 10, 999_99);
+		stockDeltaFeed.onStockDeltas(List.of(new ConsumerRecord<>("recreated-stock-deltas", 0, 42L, productId, """
+				{ "productId": "%s", "delta": -4 }
+				""".formatted(productId))), partitions -> Map.of(new TopicPartition("recreated-stock-deltas", 0), 43L));
+
+		// the topic was recreated, its offsets start again from 0
+		var recreated = new ConsumerRecord<>("recreated-stock-deltas", 0, 3L, productId, """
+				{ "productId": "%s", "delta": 5 }
+				""".formatted(productId));
+		assertThatThrownBy(() -> stockDeltaFeed.onStockDeltas(List.of(recreated),
+				partitions -> Map.of(new TopicPartition("recreated-stock-deltas", 0), 4L)))
+				.isInstanceOf(IllegalStateException.class);
+		// the same offsets on another topic are not the same deltas
+		stockDeltaFeed.onStockDeltas(List.of(new ConsumerRecord<>("other-stock-deltas", 0, 3L, productId, """
+				{ "productId": "%s", "delta": 5 }
+				""".formatted(productId))), partitions -> Map.of(new TopicPartition("other-stock-deltas", 0), 4L));
+
+		var product = mongoClient.getDatabase("sellersphere").getCollection("products")
+				.find(new Document("_id", new ObjectId(productId))).first();
+		assertThat(product.getInteger("quantity")).isEqualTo(11);
 	}
 
 	private String insertProductIntoMongo(String category, String name, int quantity, int price){
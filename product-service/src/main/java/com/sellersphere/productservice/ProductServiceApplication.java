@@ -2,21 +2,31 @@ package com.sellersphere.productservice;
 
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.sellersphere.productservice.rest.ProductRestController;
 import jakarta.servlet.Filter;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.ReactiveManagementWebSecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.web.cors.reactive.CorsWebFilter;
 import org.springframework.web.filter.CorsFilter;
 
 import java.util.List;
 
-@SpringBootApplication(scanBasePackages = "com.sellersphere", exclude = {SecurityAutoConfiguration.class})
+@SpringBootApplication(scanBasePackages = "com.sellersphere", exclude = {SecurityAutoConfiguration.class,
+		ReactiveSecurityAutoConfiguration.class, ReactiveUserDetailsServiceAutoConfiguration.class,
+		ReactiveManagementWebSecurityAutoConfiguration.class, MongoReactiveAutoConfiguration.class})
 public class ProductServiceApplication {
 
 	public static void main(String[] args) {
@@ -24,6 +34,7 @@ public class ProductServiceApplication {
 	}
 
 	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 	public SecurityFilterChain securityFilterChain(CorsFilter corsFilter){
 		return new SecurityFilterChain() {
 			@Override
@@ -39,17 +50,46 @@ public class ProductServiceApplication {
 	}
 
 	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 	public CorsFilter corsFilter(){
+		var source = new UrlBasedCorsConfigurationSource();
+		source.registerCorsConfiguration("/**", corsConfiguration());
+		return new CorsFilter(source);
+	}
+
+	/**
+	 * Tomcat is on the classpath for the servlet stack, the reactive stack runs on Netty.
+	 */
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(){
+		return new NettyReactiveWebServerFactory();
+	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	public CorsWebFilter corsWebFilter(){
+		var source = new org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource();
+		source.registerCorsConfiguration("/**", corsConfiguration());
+		return new CorsWebFilter(source);
+	}
+
+	private static CorsConfiguration corsConfiguration(){
 		var cors = new CorsConfiguration();
 		cors.addAllowedOrigin("*");
 		cors.setAllowedMethods(List.of("GET", "POST"));
-		var source = new UrlBasedCorsConfigurationSource();
-		source.registerCorsConfiguration("/**", cors);
-		return new CorsFilter(source);
+		cors.addExposedHeader(ProductRestController.NEXT_CURSOR);
+		return cors;
 	}
 
 	@Bean
 	public MongoClient mongoClient(@Value("${MONGO_URL}") String url){
 		return MongoClients.create(url);
 	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient(@Value("${MONGO_URL}") String url){
+		return com.mongodb.reactivestreams.client.MongoClients.create(url);
+	}
 }
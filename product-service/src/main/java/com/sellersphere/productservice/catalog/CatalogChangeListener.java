@@ -0,0 +1,51 @@
+package com.sellersphere.productservice.catalog;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+/**
+ * Receives the changes of the {@code products} collection from the {@link CatalogChangeStream}.
+ * <p>
+ * All the callbacks are made from the single thread of the stream, in the order of the changes.
+ */
+public interface CatalogChangeListener {
+
+    /**
+     * The resume token of the last change the listener has applied, asked every time the stream opens.
+     * When the listener kept its state from an earlier stream, the new one resumes after it.
+     *
+     * @return null if the listener has no state to resume
+     */
+    default BsonDocument resumeToken() {
+        return null;
+    }
+
+    /**
+     * The stream is open, every change from now on is delivered. Changes made before may have been missed.
+     */
+    void onStreamOpened();
+
+    /**
+     * The stream is open after the {@link #resumeToken()} of this listener, every change since is delivered.
+     */
+    default void onStreamResumed() {
+        onStreamOpened();
+    }
+
+    /**
+     * A change of a product, updates carry the product as it was looked up after the change.
+     */
+    void onChange(ChangeStreamDocument<Document> change);
+
+    /**
+     * Every change up to the resume token was delivered, called while the stream waits for changes.
+     */
+    default void onCaughtUp(BsonDocument resumeToken) {
+    }
+
+    /**
+     * The stream failed or was stopped, changes are not delivered until the next {@link #onStreamOpened()}.
+     */
+    void onStreamClosed();
+}
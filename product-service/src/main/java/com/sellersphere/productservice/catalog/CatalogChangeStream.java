@@ -0,0 +1,152 @@
+package com.sellersphere.productservice.catalog;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A single change stream on {@code sellersphere.products} shared by all the {@link CatalogChangeListener} beans.
+ * <p>
+ * The stream is only opened when there is a listener, and reopened after a failure. It resumes after
+ * the resume token of a listener that kept its state, unless the oplog no longer holds it. A listener that
+ * fails to apply a change no longer follows the catalog, the stream is then closed and a new one opened
+ * without resuming, so that every listener starts over.
+ */
+@Component
+public final class CatalogChangeStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogChangeStream.class);
+    private static final Duration REOPEN_DELAY = Duration.ofSeconds(1);
+    /** ChangeStreamFatalError, InvalidResumeToken and ChangeStreamHistoryLost. */
+    private static final Set<Integer> RESUME_LOST_CODES = Set.of(280, 260, 286);
+
+    private final MongoCollection<Document> products;
+    private final List<CatalogChangeListener> listeners;
+    private volatile boolean running;
+    /** The next stream is opened without resuming, the resume token is lost or a listener missed a change. */
+    private boolean startOver;
+    private Thread watcher;
+
+    public CatalogChangeStream(MongoClient mongoClient, ObjectProvider<CatalogChangeListener> listeners) {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        this.listeners = listeners.orderedStream().toList();
+    }
+
+    @PostConstruct
+    void start() {
+        if (listeners.isEmpty()) return;
+        running = true;
+        watcher = Thread.ofPlatform().daemon().name("catalog-change-stream").start(this::watch);
+    }
+
+    private void watch() {
+        while (running) {
+            var resumeToken = startOver ? null : resumeToken();
+            var stream = products.watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS);
+            if (resumeToken != null) stream.resumeAfter(resumeToken);
+            try (var cursor = stream.cursor()) {
+                startOver = false;
+                notifyListeners(listener -> {
+                    if (resumeToken != null && resumeToken.equals(listener.resumeToken())) listener.onStreamResumed();
+                    else listener.onStreamOpened();
+                });
+                while (running) {
+                    var change = cursor.tryNext();
+                    if (change != null) {
+                        if (!notifyChange(change)) {
+                            startOver = true;
+                            break;
+                        }
+                    } else if (cursor.getResumeToken() != null) {
+                        var caughtUp = cursor.getResumeToken();
+                        notifyListeners(listener -> listener.onCaughtUp(caughtUp));
+                    }
+                }
+            } catch (MongoException e) {
+                if (resumeToken != null && RESUME_LOST_CODES.contains(e.getCode())) {
+                    // the oplog no longer goes back to the token, the listeners start over on a new stream
+                    LOGGER.warn("The catalog change stream cannot be resumed, opening a new one", e);
+                    startOver = true;
+                } else if (running) {
+                    LOGGER.warn("The catalog change stream failed, reopening it in {}", REOPEN_DELAY, e);
+                }
+            } finally {
+                notifyListeners(CatalogChangeListener::onStreamClosed);
+            }
+            if (running && !startOver) {
+                try {
+                    Thread.sleep(REOPEN_DELAY);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The first resume token of the listeners, the stream can only resume after one.
+     */
+    private BsonDocument resumeToken() {
+        for (CatalogChangeListener listener : listeners) {
+            try {
+                var resumeToken = listener.resumeToken();
+                if (resumeToken != null) return resumeToken;
+            } catch (RuntimeException e) {
+                LOGGER.error("{} failed to give its resume token", listener.getClass().getSimpleName(), e);
+            }
+        }
+        return null;
+    }
+
+    private void notifyListeners(Consumer<CatalogChangeListener> notification) {
+        for (CatalogChangeListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                LOGGER.error("{} failed to handle a catalog change", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Delivers a change to every listener.
+     *
+     * @return false if a listener failed to apply it
+     */
+    private boolean notifyChange(ChangeStreamDocument<Document> change) {
+        for (CatalogChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                LOGGER.error("{} failed to handle a catalog change, opening a new catalog change stream",
+                        listener.getClass().getSimpleName(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (watcher != null) watcher.join(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,91 @@
+package com.sellersphere.productservice.codec;
+
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductCategory;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.sellersphere.productservice.codec.ProductCodecs.readInt;
+import static com.sellersphere.productservice.codec.ProductCodecs.readNullableString;
+import static com.sellersphere.productservice.codec.ProductCodecs.writeNullableString;
+
+/**
+ * Decodes a product document into the record of its category.
+ * <p>
+ * The fields can come in any order, so the fields of every category are read before the record is built.
+ */
+final class ProductCodec implements Codec<Product> {
+
+    @Override
+    public Product decode(BsonReader reader, DecoderContext decoderContext) {
+        String productId = null, productName = null, description = null;
+        ProductCategory category = null;
+        int quantity = 0, price = 0, ram = 0;
+        List<String> images = List.of();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id" -> productId = reader.readObjectId().toHexString();
+                case "category" -> category = ProductCategory.valueOf(reader.readString());
+                case "productName" -> productName = readNullableString(reader);
+                case "description" -> description = readNullableString(reader);
+                case "quantity" -> quantity = readInt(reader);
+                case "price" -> price = readInt(reader);
+                case "ram" -> ram = readInt(reader);
+                case "images" -> images = readImages(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        if (category == null) throw new IllegalStateException("Product %s has no category".formatted(productId));
+        return switch (category) {
+            case LAPTOP -> new Laptop(productId, productName, quantity, price, ram, images, description);
+        };
+    }
+
+    private static List<String> readImages(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return List.of();
+        }
+        var images = new ArrayList<String>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) images.add(reader.readString());
+        reader.readEndArray();
+        return images;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Product product, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        switch (product) {
+            case Laptop laptop -> {
+                if (laptop.productId() != null) writer.writeObjectId("_id", new ObjectId(laptop.productId()));
+                writer.writeString("category", ProductCategory.LAPTOP.name());
+                writer.writeInt32("quantity", laptop.quantity());
+                writer.writeInt32("price", laptop.price());
+                writeNullableString(writer, "productName", laptop.productName());
+                writer.writeStartArray("images");
+                if (laptop.images() != null) for (String image : laptop.images()) writer.writeString(image);
+                writer.writeEndArray();
+                writeNullableString(writer, "description", laptop.description());
+                writer.writeInt32("ram", laptop.ram());
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Product> getEncoderClass() {
+        return Product.class;
+    }
+}
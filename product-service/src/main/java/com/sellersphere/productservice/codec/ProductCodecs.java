@@ -0,0 +1,69 @@
+package com.sellersphere.productservice.codec;
+
+import com.mongodb.MongoClientSettings;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductOverview;
+import com.sellersphere.productservice.data.ProductView;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * The codecs reading the products straight into their records, without an intermediate {@code Document}.
+ */
+public final class ProductCodecs {
+
+    private static final ProductCodec PRODUCT = new ProductCodec();
+    private static final ProductViewCodec PRODUCT_VIEW = new ProductViewCodec();
+    private static final ProductOverviewCodec PRODUCT_OVERVIEW = new ProductOverviewCodec();
+
+    private static final CodecProvider PROVIDER = new CodecProvider() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+            // the product codec decodes the record of the category, Laptop for laptops
+            if (Product.class.isAssignableFrom(clazz)) return (Codec<T>) PRODUCT;
+            if (clazz == ProductView.class) return (Codec<T>) PRODUCT_VIEW;
+            if (clazz == ProductOverview.class) return (Codec<T>) PRODUCT_OVERVIEW;
+            return null;
+        }
+    };
+
+    /**
+     * The product codecs, then the default codecs of the driver.
+     */
+    public static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromProviders(PROVIDER), MongoClientSettings.getDefaultCodecRegistry());
+
+    private ProductCodecs() {
+    }
+
+    /**
+     * Reads a whole number stored as any numeric type.
+     */
+    static int readInt(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> Math.toIntExact(reader.readInt64());
+            case DOUBLE -> (int) reader.readDouble();
+            default -> throw new IllegalStateException("Expected a number, found " + reader.getCurrentBsonType());
+        };
+    }
+
+    static String readNullableString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        return reader.readString();
+    }
+
+    static void writeNullableString(BsonWriter writer, String name, String value) {
+        if (value == null) writer.writeNull(name);
+        else writer.writeString(name, value);
+    }
+}
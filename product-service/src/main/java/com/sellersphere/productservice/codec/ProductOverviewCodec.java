@@ -0,0 +1,49 @@
+package com.sellersphere.productservice.codec;
+
+import com.sellersphere.productservice.data.ProductOverview;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import static com.sellersphere.productservice.codec.ProductCodecs.readInt;
+
+/**
+ * Decodes the stock of a product, its quantity and price.
+ */
+final class ProductOverviewCodec implements Codec<ProductOverview> {
+
+    @Override
+    public ProductOverview decode(BsonReader reader, DecoderContext decoderContext) {
+        String productId = null;
+        int quantity = 0, price = 0;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id" -> productId = reader.readObjectId().toHexString();
+                case "quantity" -> quantity = readInt(reader);
+                case "price" -> price = readInt(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new ProductOverview(productId, quantity, price);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, ProductOverview overview, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeObjectId("_id", new ObjectId(overview.productId()));
+        writer.writeInt32("quantity", overview.quantity());
+        writer.writeInt32("price", overview.price());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<ProductOverview> getEncoderClass() {
+        return ProductOverview.class;
+    }
+}
@@ -0,0 +1,68 @@
+package com.sellersphere.productservice.codec;
+
+import com.sellersphere.productservice.data.ProductView;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import static com.sellersphere.productservice.codec.ProductCodecs.readInt;
+import static com.sellersphere.productservice.codec.ProductCodecs.readNullableString;
+import static com.sellersphere.productservice.codec.ProductCodecs.writeNullableString;
+
+/**
+ * Decodes the search view of a product, reading only the first of its images.
+ */
+final class ProductViewCodec implements Codec<ProductView> {
+
+    @Override
+    public ProductView decode(BsonReader reader, DecoderContext decoderContext) {
+        String productId = null, productName = null, image = null;
+        int quantity = 0, price = 0;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id" -> productId = reader.readObjectId().toHexString();
+                case "productName" -> productName = readNullableString(reader);
+                case "quantity" -> quantity = readInt(reader);
+                case "price" -> price = readInt(reader);
+                case "images" -> {
+                    if (reader.getCurrentBsonType() == BsonType.NULL) {
+                        reader.readNull();
+                        continue;
+                    }
+                    reader.readStartArray();
+                    if (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        image = reader.readString();
+                        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) reader.skipValue();
+                    }
+                    reader.readEndArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new ProductView(productId, productName, image, quantity, price);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, ProductView view, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeObjectId("_id", new ObjectId(view.productId()));
+        writeNullableString(writer, "productName", view.productName());
+        writer.writeStartArray("images");
+        if (view.image() != null) writer.writeString(view.image());
+        writer.writeEndArray();
+        writer.writeInt32("quantity", view.quantity());
+        writer.writeInt32("price", view.price());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<ProductView> getEncoderClass() {
+        return ProductView.class;
+    }
+}
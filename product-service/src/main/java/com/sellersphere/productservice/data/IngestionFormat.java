@@ -0,0 +1,18 @@
+package com.sellersphere.productservice.data;
+
+import java.util.Optional;
+
+public enum IngestionFormat {
+    /** One JSON object per line. */
+    NDJSON,
+    /** A header line naming the columns, then one product per line. */
+    CSV;
+
+    public static Optional<IngestionFormat> fromMediaType(String mediaType) {
+        return Optional.ofNullable(switch (mediaType) {
+            case "application/x-ndjson" -> NDJSON;
+            case "text/csv" -> CSV;
+            default -> null;
+        });
+    }
+}
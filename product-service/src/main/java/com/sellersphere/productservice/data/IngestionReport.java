@@ -0,0 +1,16 @@
+package com.sellersphere.productservice.data;
+
+import java.util.List;
+
+/**
+ * The outcome of an ingestion upload.
+ *
+ * @param records the records read, blank lines excluded
+ * @param failed  the records that were rejected or could not be written
+ * @param errors  the errors of the first failed records, ordered by line
+ */
+public record IngestionReport(long records, long inserted, long failed, List<LineError> errors) {
+
+    public record LineError(long line, String message) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.sellersphere.productservice.data;
+
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * The position after the last product of a search page, for seeking to the next page.
+ * <p>
+ * Sent to the clients as an opaque base64url token of the sort, the price and the id of that product.
+ */
+public record ProductCursor(ProductSort sort, int price, String productId) {
+
+    private static final int ENCODED_LENGTH = 1 + Integer.BYTES + 12;
+
+    public String encode() {
+        var bytes = ByteBuffer.allocate(ENCODED_LENGTH)
+                .put((byte) sort.ordinal())
+                .putInt(price)
+                .put(new ObjectId(productId).toByteArray())
+                .array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @return empty if the token was not made by {@link #encode()}
+     */
+    public static Optional<ProductCursor> decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (bytes.length != ENCODED_LENGTH || bytes[0] < 0 || bytes[0] >= ProductSort.values().length) return Optional.empty();
+        var buffer = ByteBuffer.wrap(bytes);
+        var sort = ProductSort.values()[buffer.get()];
+        int price = buffer.getInt();
+        var objectId = new byte[12];
+        buffer.get(objectId);
+        return Optional.of(new ProductCursor(sort, price, new ObjectId(objectId).toHexString()));
+    }
+}
@@ -0,0 +1,21 @@
+package com.sellersphere.productservice.data;
+
+import java.util.List;
+
+/**
+ * The counts of the products matching the filters of a {@link ProductQuery}, whatever its page.
+ *
+ * @param prices a bucket per price range, empty ones included
+ * @param ram    the laptops per ram size, most common first
+ */
+public record ProductFacets(long total, List<PriceBucket> prices, List<ValueCount> ram) {
+
+    /**
+     * @param to the end of the range, exclusive, null for the last range
+     */
+    public record PriceBucket(int from, Integer to, long count) {
+    }
+
+    public record ValueCount(int value, long count) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.sellersphere.productservice.data;
+
+/**
+ * The result of looking up one id of a batch.
+ *
+ * @param product null if there is no product with this id
+ */
+public record ProductLookup(String productId, boolean found, ProductView product) {
+
+    public static ProductLookup notFound(String productId) {
+        return new ProductLookup(productId, false, null);
+    }
+}
@@ -0,0 +1,10 @@
+package com.sellersphere.productservice.data;
+
+import java.util.List;
+
+/**
+ * @param next the cursor of the next page, null if this is the last page
+ */
+public record ProductPage(List<ProductView> items, String next) {
+
+}
@@ -1,19 +1,41 @@
 package com.sellersphere.productservice.data;
 
 public sealed interface ProductQuery {
+    int DEFAULT_PAGE_SIZE = 15;
+    int MAX_PAGE_SIZE = 50;
+    int MAX_TEXT_LENGTH = 100;
+
     Integer minPrice();
 
     Integer maxPrice();
 
+    /**
+     * Words that must all be in the name or the description of the products, lower case and separated
+     * by single spaces, null for any product.
+     */
+    String text();
+
+    /**
+     * The last id of the previous page in the {@link ProductSort#DEFAULT} order, superseded by {@link #cursor()}.
+     */
     String lastId();
 
+    ProductSort sort();
+
+    /**
+     * Where the page starts, null for the first page.
+     */
+    ProductCursor cursor();
+
+    int pageSize();
+
     default ProductCategory category() {
         return switch (this) {
             case ForLaptop _ -> ProductCategory.LAPTOP;
         };
     }
 
-    record ForLaptop(Integer minPrice, Integer maxPrice, String lastId,
-                     Integer ram) implements ProductQuery {
+    record ForLaptop(Integer minPrice, Integer maxPrice, String text, String lastId,
+                     Integer ram, ProductSort sort, ProductCursor cursor, int pageSize) implements ProductQuery {
     }
 }
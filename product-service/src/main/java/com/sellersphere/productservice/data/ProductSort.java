@@ -0,0 +1,22 @@
+package com.sellersphere.productservice.data;
+
+import java.util.Optional;
+
+public enum ProductSort {
+    /** Oldest first, the order of {@code _id}. */
+    DEFAULT,
+    PRICE_ASC,
+    PRICE_DESC,
+    /** Newest first, the reverse order of {@code _id}. */
+    NEWEST;
+
+    public static Optional<ProductSort> fromString(String str) {
+        return Optional.ofNullable(switch (str) {
+            case "default" -> DEFAULT;
+            case "price_asc" -> PRICE_ASC;
+            case "price_desc" -> PRICE_DESC;
+            case "newest" -> NEWEST;
+            default -> null;
+        });
+    }
+}
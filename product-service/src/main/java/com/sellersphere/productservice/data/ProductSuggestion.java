@@ -0,0 +1,43 @@
+package com.sellersphere.productservice.data;
+
+import java.util.Locale;
+
+/**
+ * A product with a word of its name starting with the typed prefix.
+ */
+public record ProductSuggestion(String productId, String productName) {
+
+    public static final int MAX_SUGGESTIONS = 10;
+    /** The characters of a normalized prefix that are matched, the rest is ignored. */
+    public static final int MAX_PREFIX_LENGTH = 32;
+
+    /**
+     * The words of a name or prefix in lower case, separated by single spaces, the form in which they are matched.
+     */
+    public static String normalize(String text) {
+        var lowerCase = text.toLowerCase(Locale.ROOT);
+        var words = new StringBuilder(lowerCase.length());
+        boolean separated = false;
+        for (int i = 0; i < lowerCase.length(); ) {
+            int c = lowerCase.codePointAt(i);
+            i += Character.charCount(c);
+            if (!isWordCharacter(c)) {
+                separated = !words.isEmpty();
+                continue;
+            }
+            if (separated) words.append(' ');
+            separated = false;
+            words.appendCodePoint(c);
+        }
+        return words.toString();
+    }
+
+    /**
+     * A letter or a digit, {@code [\p{L}\p{N}]}, anything else separates the words.
+     */
+    public static boolean isWordCharacter(int codePoint) {
+        if (Character.isLetter(codePoint)) return true;
+        int type = Character.getType(codePoint);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+}
@@ -0,0 +1,566 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The searchable fields of the catalog as primitive columns, one row per product.
+ * <p>
+ * The rows are kept sorted by {@code _id} and by {@code (price, _id)}, the orders of the sorts, and
+ * the rows of every category and ram size are bitmaps. A search checks the bitmaps of its equality
+ * filters, then either walks the sorted rows from the position of its cursor and price range until the
+ * page is full, or, when its price range or a bitmap holds few rows, sorts just those.
+ * <p>
+ * The ids are held as their first 8 and last 4 bytes, compared unsigned they order as {@link ObjectId}s.
+ * Any number of searches run together, writes are exclusive.
+ */
+final class CatalogIndex {
+
+    record Row(ObjectId id, ProductCategory category, int price, int ram, int quantity, String productName, String image) {
+    }
+
+    /**
+     * The rows of an index in id order, byPrice holds the rows in price order. The arrays can be longer than size.
+     */
+    record Columns(int size, long[] idHigh, int[] idLow, byte[] category, int[] price, int[] ram, int[] quantity,
+                   int[] byPrice, TextColumn productName, TextColumn image, BsonDocument resumeToken) {
+    }
+
+    /** Below this many candidate rows they are sorted instead of walking a sorted index. */
+    static final int FEW_CANDIDATES = 4096;
+    private static final RowSet NO_ROWS = new RowSet();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] idHigh;
+    private int[] idLow;
+    private byte[] category;
+    private int[] price, ram, quantity;
+    private TextColumn productName, image;
+    /** Rows ever allocated, the slots of removed rows are reused from free. */
+    private int allocated;
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private int[] byId, byPrice;
+    /** Live rows, the used length of byId and byPrice. */
+    private int size;
+    private final RowSet[] categoryRows = new RowSet[ProductCategory.values().length];
+    private final HashMap<Integer, RowSet> ramRows = new HashMap<>();
+    private boolean sealed;
+    /** The resume token of the last change applied, null while loading. */
+    private BsonDocument resumeToken;
+
+    CatalogIndex(int capacity) {
+        int initial = Math.max(capacity, 16);
+        idHigh = new long[initial];
+        idLow = new int[initial];
+        category = new byte[initial];
+        price = new int[initial];
+        ram = new int[initial];
+        quantity = new int[initial];
+        productName = new TextColumn(null, new String[initial], new int[initial]);
+        image = new TextColumn(null, new String[initial], new int[initial]);
+        byId = new int[initial];
+        byPrice = new int[initial];
+        for (int i = 0; i < categoryRows.length; i++) categoryRows[i] = new RowSet();
+    }
+
+    /**
+     * A sealed index of the columns, in sync up to their resume token. The index takes the arrays over.
+     */
+    CatalogIndex(Columns columns) {
+        idHigh = columns.idHigh();
+        idLow = columns.idLow();
+        category = columns.category();
+        price = columns.price();
+        ram = columns.ram();
+        quantity = columns.quantity();
+        productName = columns.productName();
+        image = columns.image();
+        byPrice = columns.byPrice();
+        byId = new int[idHigh.length];
+        for (int i = 0; i < categoryRows.length; i++) categoryRows[i] = new RowSet();
+        size = allocated = columns.size();
+        for (int slot = 0; slot < size; slot++) {
+            byId[slot] = slot;
+            categoryRows[category[slot]].add(slot);
+            ramRows.computeIfAbsent(ram[slot], _ -> new RowSet()).add(slot);
+        }
+        resumeToken = columns.resumeToken();
+        sealed = true;
+    }
+
+    /**
+     * Adds a row while loading, before {@link #seal()}. The ids must be unique.
+     */
+    void append(Row row) {
+        if (sealed) throw new IllegalStateException("The index is sealed, upsert instead");
+        int slot = allocate();
+        write(slot, row);
+        byId[size] = slot;
+        byPrice[size] = slot;
+        size++;
+    }
+
+    /**
+     * Sorts the appended rows, after that the index is searchable and kept sorted by every change.
+     */
+    void seal() {
+        byId = sortRows(byId, this::compareIds);
+        byPrice = sortRows(byPrice, (a, b) -> {
+            int c = Integer.compare(price[a], price[b]);
+            return c != 0 ? c : compareIds(a, b);
+        });
+        sealed = true;
+    }
+
+    private int[] sortRows(int[] rows, Comparator<Integer> order) {
+        var sorted = new Integer[size];
+        for (int i = 0; i < size; i++) sorted[i] = rows[i];
+        Arrays.sort(sorted, order);
+        var result = new int[rows.length];
+        for (int i = 0; i < size; i++) result[i] = sorted[i];
+        return result;
+    }
+
+    /**
+     * A copy of the live rows and the resume token they are in sync with.
+     */
+    Columns columns() {
+        lock.readLock().lock();
+        try {
+            var rowOfSlot = new int[allocated];
+            var ids = new long[size];
+            var lows = new int[size];
+            var categories = new byte[size];
+            var prices = new int[size];
+            var rams = new int[size];
+            var quantities = new int[size];
+            for (int row = 0; row < size; row++) {
+                int slot = byId[row];
+                rowOfSlot[slot] = row;
+                ids[row] = idHigh[slot];
+                lows[row] = idLow[slot];
+                categories[row] = category[slot];
+                prices[row] = price[slot];
+                rams[row] = ram[slot];
+                quantities[row] = quantity[slot];
+            }
+            var rowsByPrice = new int[size];
+            for (int i = 0; i < size; i++) rowsByPrice[i] = rowOfSlot[byPrice[i]];
+            return new Columns(size, ids, lows, categories, prices, rams, quantities, rowsByPrice,
+                    productName.copy(byId, size), image.copy(byId, size), resumeToken);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    BsonDocument resumeToken() {
+        lock.readLock().lock();
+        try {
+            return resumeToken;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that every change up to the resume token was applied.
+     */
+    void advance(BsonDocument resumeToken) {
+        lock.writeLock().lock();
+        try {
+            this.resumeToken = resumeToken;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void upsert(Row row) {
+        long high = high(row.id());
+        int low = low(row.id());
+        lock.writeLock().lock();
+        try {
+            int position = idPosition(high, low);
+            if (position < size && compareId(byId[position], high, low) == 0) {
+                int slot = byId[position];
+                if (price[slot] != row.price()) {
+                    removeAt(byPrice, pricePosition(price[slot], high, low, size));
+                    price[slot] = row.price();
+                    insertAt(byPrice, pricePosition(row.price(), high, low, size - 1), slot, size - 1);
+                }
+                clearBits(slot);
+                write(slot, row);
+                return;
+            }
+            int slot = allocate();
+            write(slot, row);
+            insertAt(byId, position, slot, size);
+            insertAt(byPrice, pricePosition(row.price(), high, low, size), slot, size);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ObjectId id) {
+        long high = high(id);
+        int low = low(id);
+        lock.writeLock().lock();
+        try {
+            int position = idPosition(high, low);
+            if (position == size || compareId(byId[position], high, low) != 0) return;
+            int slot = byId[position];
+            removeAt(byId, position);
+            removeAt(byPrice, pricePosition(price[slot], high, low, size));
+            size--;
+            clearBits(slot);
+            productName.set(slot, null);
+            image.set(slot, null);
+            if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+            free[freeCount++] = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The page of the query, in the same order and with the same filters as the MongoDB query of {@link ProductQueryEncoder}.
+     */
+    List<ProductView> search(ProductQuery query) throws InvalidProductQueryException {
+        ObjectId lastId = null;
+        if (query.lastId() != null) {
+            if (!ObjectId.isValid(query.lastId())) throw new InvalidProductQueryException("Invalid lastId");
+            lastId = new ObjectId(query.lastId());
+        }
+        lock.readLock().lock();
+        try {
+            var categorySet = categoryRows[query.category().ordinal()];
+            var ramSet = switch (query) {
+                case ProductQuery.ForLaptop forLaptop -> forLaptop.ram() == null ? null : ramRows.getOrDefault(forLaptop.ram(), NO_ROWS);
+            };
+            var search = new Search(query, categorySet, ramSet, lastId);
+            var rows = search.plan();
+            var views = new ArrayList<ProductView>(rows.length);
+            for (int slot : rows) views.add(view(slot));
+            return views;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private final class Search {
+        private final ProductQuery query;
+        private final RowSet categorySet, ramSet, smallest;
+        private final long minPrice, maxPrice;
+        private final boolean hasLastId;
+        private final long lastIdHigh;
+        private final int lastIdLow;
+        private final ProductCursor cursor;
+        private final long cursorHigh;
+        private final int cursorLow;
+
+        Search(ProductQuery query, RowSet categorySet, RowSet ramSet, ObjectId lastId) {
+            this.query = query;
+            this.categorySet = categorySet;
+            this.ramSet = ramSet;
+            this.smallest = ramSet != null && ramSet.count < categorySet.count ? ramSet : categorySet;
+            this.minPrice = query.minPrice() == null ? Long.MIN_VALUE : query.minPrice();
+            this.maxPrice = query.maxPrice() == null ? Long.MAX_VALUE : query.maxPrice();
+            this.hasLastId = lastId != null;
+            this.lastIdHigh = hasLastId ? high(lastId) : 0;
+            this.lastIdLow = hasLastId ? low(lastId) : 0;
+            this.cursor = query.cursor();
+            var cursorId = cursor == null ? null : new ObjectId(cursor.productId());
+            this.cursorHigh = cursorId == null ? 0 : high(cursorId);
+            this.cursorLow = cursorId == null ? 0 : low(cursorId);
+        }
+
+        boolean matches(int slot) {
+            if (!categorySet.rows.get(slot) || (ramSet != null && !ramSet.rows.get(slot))) return false;
+            if (price[slot] < minPrice || price[slot] > maxPrice) return false;
+            if (hasLastId && compareId(slot, lastIdHigh, lastIdLow) <= 0) return false;
+            if (cursor == null) return true;
+            return switch (cursor.sort()) {
+                case DEFAULT -> compareId(slot, cursorHigh, cursorLow) > 0;
+                case NEWEST -> compareId(slot, cursorHigh, cursorLow) < 0;
+                case PRICE_ASC -> comparePrice(slot, cursor.price(), cursorHigh, cursorLow) > 0;
+                case PRICE_DESC -> comparePrice(slot, cursor.price(), cursorHigh, cursorLow) < 0;
+            };
+        }
+
+        /**
+         * Sorts the few rows of the most selective filter, or walks the rows in the order of the sort.
+         */
+        int[] plan() {
+            int priceFrom = pricePosition(minPrice, 0, 0);
+            int priceTo = maxPrice == Long.MAX_VALUE ? size : pricePosition(maxPrice + 1, 0, 0);
+            if (priceTo - priceFrom <= Math.min(smallest.count, FEW_CANDIDATES)) {
+                var rows = new ArrayList<Integer>(priceTo - priceFrom);
+                for (int i = priceFrom; i < priceTo; i++) {
+                    if (matches(byPrice[i])) rows.add(byPrice[i]);
+                }
+                return firstPage(rows);
+            }
+            if (smallest.count <= FEW_CANDIDATES) {
+                var rows = new ArrayList<Integer>(smallest.count);
+                var candidates = smallest.rows;
+                for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                    if (matches(slot)) rows.add(slot);
+                }
+                return firstPage(rows);
+            }
+            return walkSortedRows(priceFrom, priceTo);
+        }
+
+        private int[] firstPage(List<Integer> rows) {
+            rows.sort(order(query.sort()));
+            int count = Math.min(rows.size(), query.pageSize());
+            var page = new int[count];
+            for (int i = 0; i < count; i++) page[i] = rows.get(i);
+            return page;
+        }
+
+        /**
+         * Walks the rows in the order of the sort from the first one that can match, the filters
+         * only skip rows, so the walk stops as soon as the page is full.
+         */
+        private int[] walkSortedRows(int priceFrom, int priceTo) {
+            var page = new int[query.pageSize()];
+            int count = 0;
+            switch (query.sort()) {
+                case DEFAULT -> {
+                    int from = 0;
+                    if (cursor != null) from = idPosition(cursorHigh, cursorLow);
+                    else if (hasLastId) from = idPosition(lastIdHigh, lastIdLow);
+                    for (int i = from; i < size && count < page.length; i++) {
+                        if (matches(byId[i])) page[count++] = byId[i];
+                    }
+                }
+                case NEWEST -> {
+                    int from = cursor != null ? idPosition(cursorHigh, cursorLow) - 1 : size - 1;
+                    for (int i = from; i >= 0 && count < page.length; i--) {
+                        if (matches(byId[i])) page[count++] = byId[i];
+                    }
+                }
+                case PRICE_ASC -> {
+                    int from = priceFrom;
+                    if (cursor != null) from = Math.max(from, pricePosition(cursor.price(), cursorHigh, cursorLow));
+                    for (int i = from; i < priceTo && count < page.length; i++) {
+                        if (matches(byPrice[i])) page[count++] = byPrice[i];
+                    }
+                }
+                case PRICE_DESC -> {
+                    int from = priceTo - 1;
+                    if (cursor != null) from = Math.min(from, pricePosition(cursor.price(), cursorHigh, cursorLow) - 1);
+                    for (int i = from; i >= priceFrom && count < page.length; i--) {
+                        if (matches(byPrice[i])) page[count++] = byPrice[i];
+                    }
+                }
+            }
+            return Arrays.copyOf(page, count);
+        }
+    }
+
+    private Comparator<Integer> order(ProductSort sort) {
+        Comparator<Integer> byIds = this::compareIds;
+        Comparator<Integer> byPrices = (a, b) -> {
+            int c = Integer.compare(price[a], price[b]);
+            return c != 0 ? c : compareIds(a, b);
+        };
+        return switch (sort) {
+            case DEFAULT -> byIds;
+            case NEWEST -> byIds.reversed();
+            case PRICE_ASC -> byPrices;
+            case PRICE_DESC -> byPrices.reversed();
+        };
+    }
+
+    private ProductView view(int slot) {
+        var id = ByteBuffer.allocate(12).putLong(idHigh[slot]).putInt(idLow[slot]).array();
+        return new ProductView(new ObjectId(id).toHexString(), productName.get(slot), image.get(slot), quantity[slot], price[slot]);
+    }
+
+    private int allocate() {
+        if (freeCount > 0) return free[--freeCount];
+        if (allocated == idHigh.length) grow();
+        return allocated++;
+    }
+
+    private void grow() {
+        int capacity = idHigh.length * 2;
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        category = Arrays.copyOf(category, capacity);
+        price = Arrays.copyOf(price, capacity);
+        ram = Arrays.copyOf(ram, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        productName.grow(capacity);
+        image.grow(capacity);
+        byId = Arrays.copyOf(byId, capacity);
+        byPrice = Arrays.copyOf(byPrice, capacity);
+    }
+
+    private void write(int slot, Row row) {
+        idHigh[slot] = high(row.id());
+        idLow[slot] = low(row.id());
+        category[slot] = (byte) row.category().ordinal();
+        price[slot] = row.price();
+        ram[slot] = row.ram();
+        quantity[slot] = row.quantity();
+        productName.set(slot, row.productName());
+        image.set(slot, row.image());
+        categoryRows[row.category().ordinal()].add(slot);
+        ramRows.computeIfAbsent(row.ram(), _ -> new RowSet()).add(slot);
+    }
+
+    private void clearBits(int slot) {
+        categoryRows[category[slot]].remove(slot);
+        var rows = ramRows.get(ram[slot]);
+        rows.remove(slot);
+        if (rows.count == 0) ramRows.remove(ram[slot]);
+    }
+
+    /**
+     * A bitmap of rows that knows its cardinality without counting its bits.
+     */
+    private static final class RowSet {
+        final BitSet rows = new BitSet();
+        int count;
+
+        void add(int slot) {
+            if (!rows.get(slot)) count++;
+            rows.set(slot);
+        }
+
+        void remove(int slot) {
+            if (rows.get(slot)) count--;
+            rows.clear(slot);
+        }
+    }
+
+    /**
+     * Strings that are on the heap, or in the dictionary of the snapshot for the rows loaded from it
+     * and not changed since.
+     */
+    static final class TextColumn {
+        final CatalogSnapshot snapshot;
+        private String[] values;
+        /** The offsets in the dictionary of the snapshot, negative for the rows whose value is on the heap. */
+        private int[] refs;
+
+        TextColumn(CatalogSnapshot snapshot, String[] values, int[] refs) {
+            this.snapshot = snapshot;
+            this.values = values;
+            this.refs = refs;
+        }
+
+        String get(int slot) {
+            return refs[slot] < 0 ? values[slot] : snapshot.string(refs[slot]);
+        }
+
+        void set(int slot, String value) {
+            values[slot] = value;
+            refs[slot] = -1;
+        }
+
+        int ref(int slot) {
+            return refs[slot];
+        }
+
+        private void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+
+        private TextColumn copy(int[] slots, int count) {
+            var copy = new TextColumn(snapshot, new String[count], new int[count]);
+            for (int i = 0; i < count; i++) {
+                copy.values[i] = values[slots[i]];
+                copy.refs[i] = refs[slots[i]];
+            }
+            return copy;
+        }
+    }
+
+    private static void insertAt(int[] rows, int position, int slot, int length) {
+        System.arraycopy(rows, position, rows, position + 1, length - position);
+        rows[position] = slot;
+    }
+
+    private void removeAt(int[] rows, int position) {
+        System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+    }
+
+    /**
+     * The position of the first row of byId whose id is not less than the given one.
+     */
+    private int idPosition(long high, int low) {
+        int from = 0, to = size;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (compareId(byId[middle], high, low) < 0) from = middle + 1;
+            else to = middle;
+        }
+        return from;
+    }
+
+    private int pricePosition(long price, long high, int low) {
+        return pricePosition(price, high, low, size);
+    }
+
+    /**
+     * The position of the first of the length first rows of byPrice not ordered before the given price and id.
+     */
+    private int pricePosition(long price, long high, int low, int length) {
+        int from = 0, to = length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (comparePrice(byPrice[middle], price, high, low) < 0) from = middle + 1;
+            else to = middle;
+        }
+        return from;
+    }
+
+    private int compareIds(int a, int b) {
+        return compareId(a, idHigh[b], idLow[b]);
+    }
+
+    private int compareId(int slot, long high, int low) {
+        int c = Long.compareUnsigned(idHigh[slot], high);
+        return c != 0 ? c : Integer.compareUnsigned(idLow[slot], low);
+    }
+
+    private int comparePrice(int slot, long price, long high, int low) {
+        int c = Long.compare(this.price[slot], price);
+        return c != 0 ? c : compareId(slot, high, low);
+    }
+
+    static long high(ObjectId id) {
+        return ByteBuffer.wrap(id.toByteArray()).getLong();
+    }
+
+    static int low(ObjectId id) {
+        return ByteBuffer.wrap(id.toByteArray(), 8, 4).getInt();
+    }
+}
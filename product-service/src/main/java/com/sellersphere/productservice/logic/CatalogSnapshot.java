@@ -0,0 +1,197 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductCategory;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The columns of a {@link CatalogIndex} in a file, read through a memory mapping.
+ * <p>
+ * The file is big endian: a header of the magic number, the format, the row count and the resume token
+ * the rows are in sync with, then the columns of the rows in id order: the 12 bytes of the ids, the
+ * category ordinals, price, ram, quantity, the rows in price order, and the offsets of the product
+ * names and images in the dictionary that ends the file, where each string is its UTF-8 length and bytes.
+ * <p>
+ * The numeric columns are copied to the heap, they are searched and changed. The strings stay in the
+ * mapping and are only read for the rows of a page.
+ */
+final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x53534353;
+    private static final int FORMAT = 1;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int dictionary;
+
+    private CatalogSnapshot(ByteBuffer buffer, int dictionary) {
+        this.buffer = buffer;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Maps the file and reads its columns.
+     *
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    static CatalogIndex.Columns read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("The snapshot is too large to map");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC) throw new IOException("Not a catalog snapshot");
+        if (buffer.getInt(4) != FORMAT) throw new IOException("Unknown snapshot format " + buffer.getInt(4));
+        int size = buffer.getInt(8);
+        int tokenLength = buffer.getInt(12);
+        long ids = 16L + tokenLength;
+        long end = ids + 12L * size + size + 4L * 6 * size;
+        if (size < 0 || tokenLength < 0 || end > buffer.limit()) throw new IOException("Truncated catalog snapshot");
+        var token = new byte[tokenLength];
+        buffer.get(16, token);
+        var resumeToken = tokenLength == 0 ? null : new RawBsonDocument(token).decode(new BsonDocumentCodec());
+
+        int capacity = Math.max(size, 16);
+        var idHigh = new long[capacity];
+        var idLow = new int[capacity];
+        int position = (int) ids;
+        for (int row = 0; row < size; row++, position += 12) {
+            idHigh[row] = buffer.getLong(position);
+            idLow[row] = buffer.getInt(position + 8);
+            if (row > 0 && (Long.compareUnsigned(idHigh[row - 1], idHigh[row]) > 0
+                    || idHigh[row - 1] == idHigh[row] && Integer.compareUnsigned(idLow[row - 1], idLow[row]) >= 0)) {
+                throw new IOException("The ids of the catalog snapshot are not in order");
+            }
+        }
+        var category = new byte[capacity];
+        buffer.get(position, category, 0, size);
+        for (int row = 0; row < size; row++) {
+            if (category[row] < 0 || category[row] >= ProductCategory.values().length) throw new IOException("Unknown category in the catalog snapshot");
+        }
+        position += size;
+        var price = ints(buffer, position, size, capacity);
+        var ram = ints(buffer, position += 4 * size, size, capacity);
+        var quantity = ints(buffer, position += 4 * size, size, capacity);
+        var byPrice = ints(buffer, position += 4 * size, size, capacity);
+        for (int i = 0; i < size; i++) {
+            if (byPrice[i] < 0 || byPrice[i] >= size) throw new IOException("Invalid price order in the catalog snapshot");
+        }
+        var productNames = ints(buffer, position += 4 * size, size, capacity);
+        var images = ints(buffer, position += 4 * size, size, capacity);
+
+        var snapshot = new CatalogSnapshot(buffer, position + 4 * size);
+        snapshot.checkRefs(productNames, size);
+        snapshot.checkRefs(images, size);
+        return new CatalogIndex.Columns(size, idHigh, idLow, category, price, ram, quantity, byPrice,
+                new CatalogIndex.TextColumn(snapshot, new String[capacity], productNames),
+                new CatalogIndex.TextColumn(snapshot, new String[capacity], images),
+                resumeToken);
+    }
+
+    private static int[] ints(ByteBuffer buffer, int position, int size, int capacity) {
+        var values = new int[capacity];
+        buffer.slice(position, 4 * size).asIntBuffer().get(values, 0, size);
+        return values;
+    }
+
+    private void checkRefs(int[] refs, int size) throws IOException {
+        for (int row = 0; row < size; row++) {
+            if (refs[row] == NO_STRING) continue;
+            long start = (long) dictionary + refs[row];
+            if (refs[row] < 0 || start + 4 > buffer.limit()) throw new IOException("Invalid string in the catalog snapshot");
+            int length = buffer.getInt((int) start);
+            if (length < 0 || start + 4 + length > buffer.limit()) throw new IOException("Invalid string in the catalog snapshot");
+        }
+    }
+
+    String string(int ref) {
+        return new String(bytes(ref), UTF_8);
+    }
+
+    private byte[] bytes(int ref) {
+        var bytes = new byte[buffer.getInt(dictionary + ref)];
+        buffer.get(dictionary + ref + 4, bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the columns next to the file and then moves them over it, so the file is always a whole snapshot.
+     */
+    static void write(CatalogIndex.Columns columns, Path file) throws IOException {
+        int size = columns.size();
+        var token = columns.resumeToken() == null ? new byte[0] : rawBytes(columns.resumeToken());
+        var written = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(written), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(size);
+            out.writeInt(token.length);
+            out.write(token);
+            for (int row = 0; row < size; row++) {
+                out.writeLong(columns.idHigh()[row]);
+                out.writeInt(columns.idLow()[row]);
+            }
+            out.write(columns.category(), 0, size);
+            writeInts(out, columns.price(), size);
+            writeInts(out, columns.ram(), size);
+            writeInts(out, columns.quantity(), size);
+            writeInts(out, columns.byPrice(), size);
+            // the offsets first, the strings of both columns follow in the same order
+            long offset = 0;
+            for (var text : new CatalogIndex.TextColumn[]{ columns.productName(), columns.image() }) {
+                for (int row = 0; row < size; row++) {
+                    int length = length(text, row);
+                    if (length == NO_STRING) {
+                        out.writeInt(NO_STRING);
+                        continue;
+                    }
+                    if (offset > Integer.MAX_VALUE) throw new IOException("The catalog strings are too large for a snapshot");
+                    out.writeInt((int) offset);
+                    offset += 4 + length;
+                }
+            }
+            for (var text : new CatalogIndex.TextColumn[]{ columns.productName(), columns.image() }) {
+                for (int row = 0; row < size; row++) {
+                    var bytes = text.ref(row) >= 0 ? text.snapshot.bytes(text.ref(row)) : utf8(text.get(row));
+                    if (bytes == null) continue;
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        }
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int length(CatalogIndex.TextColumn text, int row) {
+        if (text.ref(row) >= 0) return text.snapshot.buffer.getInt(text.snapshot.dictionary + text.ref(row));
+        var value = text.get(row);
+        return value == null ? NO_STRING : utf8(value).length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(UTF_8);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int size) throws IOException {
+        for (int i = 0; i < size; i++) out.writeInt(values[i]);
+    }
+
+    private static byte[] rawBytes(BsonDocument document) {
+        var raw = new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer();
+        var bytes = new byte[raw.remaining()];
+        raw.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,92 @@
+package com.sellersphere.productservice.logic;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.ProductFacets;
+import com.sellersphere.productservice.data.ProductQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the facets per category and filters, kept fresh by the catalog change stream.
+ * <p>
+ * The facets count products, so quantity changes keep them, and any other change of a product
+ * evicts the facets of its category. Every eviction starts a new generation, and facets aggregated
+ * across generations are not kept, the aggregation may not have seen the change its eviction missed.
+ */
+@Component
+@ConditionalOnProperty(name = "product.facet-cache.enabled", havingValue = "true")
+public final class ProductFacetCache implements CatalogChangeListener {
+
+    private final Cache<ProductQuery, ProductFacets> facets;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean live;
+
+    public ProductFacetCache(@Value("${product.facet-cache.max-size:1000}") long maxSize,
+                             @Value("${product.facet-cache.ttl:PT10M}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.facets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, facets, "product-facets");
+    }
+
+    /**
+     * The cached facets of the filters, aggregated once by concurrent misses.
+     *
+     * @param filters  a query of {@link ProductQueryEncoder#filtersOf}
+     * @param aggregate runs the aggregation against MongoDB
+     */
+    public ProductFacets get(ProductQuery filters, Supplier<ProductFacets> aggregate) {
+        if (!live) return aggregate.get();
+        long aggregatedIn = generation.get();
+        var cached = facets.get(filters, _ -> aggregate.get());
+        // evictions skip the aggregations in progress, an eviction that ran during this one could not evict it
+        if (generation.get() != aggregatedIn) facets.asMap().remove(filters, cached);
+        return cached;
+    }
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        facets.invalidateAll();
+    }
+
+    @Override
+    public void onStreamOpened() {
+        invalidateAll();
+        live = true;
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        var category = ProductSearchCache.categoryOf(change.getFullDocument());
+        if (category == null || change.getOperationType() == OperationType.REPLACE
+                || ProductSearchCache.changesCategory(change.getUpdateDescription())) {
+            // the category before the change is unknown, or the product is not in a known category
+            invalidateAll();
+            return;
+        }
+        if (ProductSearchCache.onlyQuantityChanged(change.getUpdateDescription())) return;
+        generation.incrementAndGet();
+        facets.asMap().keySet().removeIf(query -> query.category() == category);
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+        invalidateAll();
+    }
+}
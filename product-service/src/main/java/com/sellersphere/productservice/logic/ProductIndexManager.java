@@ -0,0 +1,96 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates the indexes of the product searches on startup, and optionally checks that the searches use them.
+ * <p>
+ * Creating an index that already exists is a no-op, so every instance can run it.
+ * With {@code product.indexes.verify} set to {@code warn} or {@code fail}, a representative query
+ * of every shape is explained and a plan scanning the whole collection is logged or fails the startup.
+ */
+@Component
+public final class ProductIndexManager implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductIndexManager.class);
+
+    public enum VerifyMode { OFF, WARN, FAIL }
+
+    private final MongoCollection<Document> products;
+    private final boolean create;
+    private final VerifyMode verify;
+
+    public ProductIndexManager(MongoClient mongoClient,
+                               @Value("${product.indexes.create:true}") boolean create,
+                               @Value("${product.indexes.verify:off}") String verify) {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        this.create = create;
+        this.verify = VerifyMode.valueOf(verify.toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InvalidProductQueryException {
+        if (create) createIndexes();
+        if (verify != VerifyMode.OFF) verifyPlans();
+    }
+
+    void createIndexes() {
+        var indexes = new LinkedHashMap<String, IndexModel>();
+        for (ProductCategory category : ProductCategory.values()) {
+            for (IndexModel index : ProductQueryEncoder.indexes(category)) indexes.putIfAbsent(index.getOptions().getName(), index);
+        }
+        var created = products.createIndexes(List.copyOf(indexes.values()));
+        LOGGER.info("Ensured the product indexes {}", created);
+    }
+
+    /**
+     * @return the queries whose plan scans the whole collection
+     */
+    List<ProductQuery> verifyPlans() throws InvalidProductQueryException {
+        var scanning = new ArrayList<ProductQuery>();
+        for (ProductCategory category : ProductCategory.values()) {
+            for (ProductQuery query : ProductQueryEncoder.representativeQueries(category)) {
+                var plan = products.find(ProductQueryEncoder.encode(query))
+                        .sort(ProductQueryEncoder.sort(query.sort()))
+                        .limit(query.pageSize())
+                        .explain();
+                var winningPlan = plan.get("queryPlanner", Document.class).get("winningPlan");
+                if (hasStage(winningPlan, "COLLSCAN")) scanning.add(query);
+            }
+        }
+        if (scanning.isEmpty()) {
+            LOGGER.info("All the product searches are served by indexes");
+        } else if (verify == VerifyMode.FAIL) {
+            throw new IllegalStateException("Product searches scanning the whole collection: " + scanning);
+        } else {
+            LOGGER.warn("Product searches scanning the whole collection: {}", scanning);
+        }
+        return scanning;
+    }
+
+    private static boolean hasStage(Object plan, String stage) {
+        return switch (plan) {
+            case Document document -> stage.equals(document.get("stage"))
+                    || document.values().stream().anyMatch(value -> hasStage(value, stage));
+            case List<?> list -> list.stream().anyMatch(value -> hasStage(value, stage));
+            case null, default -> false;
+        };
+    }
+}
@@ -0,0 +1,167 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.sellersphere.productservice.codec.ProductCodecs;
+import com.sellersphere.productservice.data.IngestionFormat;
+import com.sellersphere.productservice.data.IngestionReport;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.logic.ProductRecordReader.ProductRecord;
+import com.sellersphere.productservice.rest.InvalidUploadException;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads the products of an upload into MongoDB while it is still being read.
+ * <p>
+ * The valid records are inserted in unordered bulk writes of {@code product.ingestion.batch-size}
+ * products, each on its own virtual thread. At most {@code product.ingestion.max-in-flight} batches
+ * are written at once, after that reading waits for a batch to complete, so a fast upload is held
+ * back by MongoDB instead of piling up in memory.
+ * <p>
+ * The products are inserted with version 0, placing an order expects the version of their stock.
+ */
+@Service
+@ConditionalOnProperty(name = "product.ingestion.key")
+public final class ProductIngestionService {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final Codec<Product> PRODUCT_CODEC = ProductCodecs.REGISTRY.get(Product.class);
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private final MongoCollection<BsonDocument> products;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    @Autowired
+    public ProductIngestionService(MongoClient mongoClient,
+                                   @Value("${product.ingestion.batch-size:1000}") int batchSize,
+                                   @Value("${product.ingestion.max-in-flight:4}") int maxInFlight) {
+        this(mongoClient.getDatabase("sellersphere").getCollection("products", BsonDocument.class),
+                batchSize, maxInFlight);
+    }
+
+    ProductIngestionService(MongoCollection<BsonDocument> products, int batchSize, int maxInFlight) {
+        this.products = products;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public IngestionReport ingest(ProductCategory category, IngestionFormat format, Reader upload)
+            throws IOException, InvalidUploadException {
+        var report = new ReportBuilder();
+        var inFlight = new Semaphore(maxInFlight);
+        // the executor is closed first, waiting for the batches still in flight
+        try (var reader = ProductRecordReader.of(format, category, upload);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var batch = new Batch(batchSize);
+            ProductRecord record;
+            while ((record = reader.next()) != null) {
+                report.read();
+                switch (record) {
+                    case ProductRecord.Valid valid -> batch.add(valid);
+                    case ProductRecord.Invalid invalid -> report.fail(invalid.line(), invalid.message());
+                }
+                if (batch.size() == batchSize) {
+                    submit(batch, inFlight, executor, report);
+                    batch = new Batch(batchSize);
+                }
+            }
+            if (batch.size() > 0) submit(batch, inFlight, executor, report);
+        }
+        return report.build();
+    }
+
+    private void submit(Batch batch, Semaphore inFlight, ExecutorService executor, ReportBuilder report) {
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                write(batch, report);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void write(Batch batch, ReportBuilder report) {
+        try {
+            report.inserted(products.bulkWrite(batch.models, UNORDERED).getInsertedCount());
+        } catch (MongoBulkWriteException e) {
+            // unordered, every product but the failed ones was inserted
+            report.inserted(e.getWriteResult().getInsertedCount());
+            for (BulkWriteError error : e.getWriteErrors()) report.fail(batch.lines[error.getIndex()], error.getMessage());
+        } catch (RuntimeException e) {
+            // the outcome of the chunk is unknown, it is reported failed as a whole
+            for (int i = 0; i < batch.size(); i++) report.fail(batch.lines[i], "Write failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Batch {
+        final List<InsertOneModel<BsonDocument>> models;
+        final long[] lines;
+
+        Batch(int capacity) {
+            models = new ArrayList<>(capacity);
+            lines = new long[capacity];
+        }
+
+        void add(ProductRecord.Valid record) {
+            lines[models.size()] = record.line();
+            var document = new BsonDocument();
+            PRODUCT_CODEC.encode(new BsonDocumentWriter(document), record.product(), ENCODER_CONTEXT);
+            models.add(new InsertOneModel<>(document.append("version", new BsonInt32(0))));
+        }
+
+        int size() {
+            return models.size();
+        }
+    }
+
+    /**
+     * Shared by the reading thread and the batches.
+     */
+    private static final class ReportBuilder {
+        private long records, inserted, failed;
+        private final List<IngestionReport.LineError> errors = new ArrayList<>();
+
+        synchronized void read() {
+            records++;
+        }
+
+        synchronized void inserted(long count) {
+            inserted += count;
+        }
+
+        synchronized void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new IngestionReport.LineError(line, message));
+        }
+
+        synchronized IngestionReport build() {
+            errors.sort(Comparator.comparingLong(IngestionReport.LineError::line));
+            return new IngestionReport(records, inserted, failed, List.copyOf(errors));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sellersphere.productservice.logic;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.data.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * In process cache of the decoded products, kept fresh by the catalog change stream.
+ * <p>
+ * The static fields of a product are kept apart from its stock (quantity and price), so the
+ * frequent stock updates patch the cached product instead of evicting it. Concurrent misses of
+ * the same product are collapsed into a single load. While the change stream is not open the
+ * cache is bypassed, as changes could be missed.
+ */
+@Component
+@ConditionalOnProperty(name = "product.cache.enabled", havingValue = "true")
+public final class ProductNearCache implements CatalogChangeListener {
+
+    private static final Set<String> STOCK_FIELDS = Set.of("quantity", "price", "version", "sold");
+
+    private final Cache<ObjectId, CachedProduct> products;
+    private volatile boolean live;
+
+    public ProductNearCache(@Value("${product.cache.max-size:10000}") long maxSize,
+                            @Value("${product.cache.ttl:PT10M}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+    }
+
+    /**
+     * The cached product, loaded once by concurrent misses.
+     *
+     * @param loader the product document, or null if there is no such product
+     */
+    public Optional<Product> get(ObjectId productId, Function<ObjectId, Document> loader) {
+        if (!live) return Optional.ofNullable(loader.apply(productId)).map(ProductServiceImpl::decodeProduct);
+        var cached = products.get(productId, id -> {
+            var document = loader.apply(id);
+            return document == null ? null : new CachedProduct(ProductServiceImpl.decodeProduct(document), ProductStock.of(document));
+        });
+        return cached == null ? Optional.empty() : Optional.of(cached.product());
+    }
+
+    /**
+     * The product if it is cached, without loading it.
+     */
+    public Optional<Product> getIfPresent(ObjectId productId) {
+        if (!live) return Optional.empty();
+        return Optional.ofNullable(products.getIfPresent(productId)).map(CachedProduct::product);
+    }
+
+    /**
+     * The version of the product if it is cached.
+     */
+    public OptionalLong getVersionIfPresent(ObjectId productId) {
+        if (!live) return OptionalLong.empty();
+        var cached = products.getIfPresent(productId);
+        return cached == null ? OptionalLong.empty() : OptionalLong.of(cached.stock().version());
+    }
+
+    @Override
+    public void onStreamOpened() {
+        products.invalidateAll();
+        live = true;
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        var documentKey = change.getDocumentKey();
+        if (documentKey == null || !documentKey.isObjectId("_id")) {
+            products.invalidateAll();
+            return;
+        }
+        var productId = documentKey.getObjectId("_id").getValue();
+        switch (change.getOperationType()) {
+            case UPDATE -> {
+                var fullDocument = change.getFullDocument();
+                if (fullDocument != null && onlyStockChanged(change.getUpdateDescription())) {
+                    var stock = ProductStock.of(fullDocument);
+                    products.asMap().computeIfPresent(productId, (id, cached) -> cached.withStock(stock));
+                } else {
+                    products.invalidate(productId);
+                }
+            }
+            default -> products.invalidate(productId);
+        }
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+        products.invalidateAll();
+    }
+
+    private static boolean onlyStockChanged(UpdateDescription update) {
+        if (update == null || update.getUpdatedFields() == null) return false;
+        if (update.getRemovedFields() != null && !update.getRemovedFields().isEmpty()) return false;
+        if (update.getTruncatedArrays() != null && !update.getTruncatedArrays().isEmpty()) return false;
+        for (String field : update.getUpdatedFields().keySet()) {
+            if (!STOCK_FIELDS.contains(field) && !isStockFeedOffset(field)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The offsets the stock feed of the order service records along with the quantity.
+     */
+    static boolean isStockFeedOffset(String field) {
+        return field.equals("stockFeedOffsets") || field.startsWith("stockFeedOffsets.");
+    }
+
+    /**
+     * The volatile part of a product, the version orders the stock updates.
+     */
+    record ProductStock(int quantity, int price, long version) {
+
+        static ProductStock of(Document document) {
+            long version = document.get("version") instanceof Number number ? number.longValue() : 0;
+            return new ProductStock(document.getInteger("quantity"), document.getInteger("price"), version);
+        }
+    }
+
+    /**
+     * The product as loaded, with its quantity and price taken from the latest stock.
+     */
+    private record CachedProduct(Product loaded, ProductStock stock) {
+
+        CachedProduct withStock(ProductStock latest) {
+            // the stock looked up by the change stream can be older than a concurrent load
+            return latest.version() < stock.version() ? this : new CachedProduct(loaded, latest);
+        }
+
+        Product product() {
+            return switch (loaded) {
+                case Laptop laptop -> laptop.quantity() == stock.quantity() && laptop.price() == stock.price() ? laptop
+                        : new Laptop(laptop.productId(), laptop.productName(), stock.quantity(), stock.price(),
+                        laptop.ram(), laptop.images(), laptop.description());
+            };
+        }
+    }
+}
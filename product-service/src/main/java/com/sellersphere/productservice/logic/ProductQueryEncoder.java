@@ -0,0 +1,182 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.model.BucketOptions;
+import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.mongodb.client.model.Aggregates.bucket;
+import static com.mongodb.client.model.Aggregates.count;
+import static com.mongodb.client.model.Aggregates.facet;
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Aggregates.sortByCount;
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Indexes.ascending;
+import static com.mongodb.client.model.Indexes.descending;
+
+/**
+ * Encodes a {@link ProductQuery} to its MongoDB filter, and declares the indexes serving each shape of query.
+ */
+final class ProductQueryEncoder {
+
+    private static final String SEPARATOR = "[^\\p{L}\\p{N}]";
+
+    private ProductQueryEncoder() {
+    }
+
+    static Bson encode(ProductQuery query) throws InvalidProductQueryException {
+        ArrayList<Bson> filters = new ArrayList<>(6);
+        filters.add(eq("category", query.category().name()));
+        if (query.lastId() != null) {
+            ObjectId lastId;
+            try {
+                lastId = new ObjectId(query.lastId());
+            } catch (IllegalArgumentException e){
+                throw new InvalidProductQueryException("Invalid lastId");
+            }
+            filters.add(gt("_id", lastId));
+        }
+        if (query.cursor() != null) filters.add(seek(query.cursor()));
+        if (query.minPrice() != null) filters.add(gte("price", query.minPrice()));
+        if (query.maxPrice() != null) filters.add(lte("price", query.maxPrice()));
+        if (query.text() != null) {
+            // a scan, the text index answers these queries when it is enabled
+            for (String word : query.text().split(" ")) {
+                var pattern = wholeWord(word);
+                filters.add(or(regex("productName", pattern), regex("description", pattern)));
+            }
+        }
+
+        switch (query){
+            case ProductQuery.ForLaptop forLaptop -> {
+                if (forLaptop.ram() != null) filters.add(eq("ram", forLaptop.ram()));
+            }
+        }
+        return filters.size() == 1 ? filters.getFirst() : Filters.and(filters);
+    }
+
+    /**
+     * Matches the word between separators, as the text index matches the words of a text to its tokens
+     * instead of to any part of them.
+     */
+    static Pattern wholeWord(String word) {
+        return Pattern.compile("(?:^|" + SEPARATOR + ")" + Pattern.quote(word) + "(?:$|" + SEPARATOR + ")",
+                Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * The products of the category with a word of their name starting with the normalized prefix, a scan,
+     * the suggester answers these queries when it is enabled.
+     */
+    static Bson suggestions(ProductCategory category, String prefix) {
+        var pattern = new StringBuilder("(?:^|").append(SEPARATOR).append(')');
+        var words = prefix.split(" ", -1);
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) pattern.append(SEPARATOR).append('+');
+            // a prefix ending with a space is followed by another word
+            pattern.append(words[i].isEmpty() ? "[\\p{L}\\p{N}]" : Pattern.quote(words[i]));
+        }
+        return and(eq("category", category.name()),
+                regex("productName", Pattern.compile(pattern.toString(), Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * The filters of the query alone, the same for all its pages and sorts.
+     */
+    static ProductQuery filtersOf(ProductQuery query) {
+        return switch (query) {
+            case ProductQuery.ForLaptop forLaptop -> new ProductQuery.ForLaptop(forLaptop.minPrice(), forLaptop.maxPrice(),
+                    forLaptop.text(), null, forLaptop.ram(), ProductSort.DEFAULT, null, ProductQuery.DEFAULT_PAGE_SIZE);
+        };
+    }
+
+    /**
+     * Counts the products matching the filters of the query in one {@code $facet} stage: all of them,
+     * per price bucket, and per value of the equality filters of the category.
+     *
+     * @param priceBoundaries the start of every price bucket, ascending, prices below the first are left out
+     */
+    static List<Bson> facets(ProductQuery query, List<Integer> priceBoundaries) throws InvalidProductQueryException {
+        var boundaries = new ArrayList<>(priceBoundaries);
+        boundaries.add(Integer.MAX_VALUE);
+        var facets = new ArrayList<Facet>(3);
+        facets.add(new Facet("total", count()));
+        facets.add(new Facet("prices", bucket("$price", boundaries, new BucketOptions().defaultBucket("other"))));
+        switch (query) {
+            case ProductQuery.ForLaptop _ -> facets.add(new Facet("ram", sortByCount("$ram")));
+        }
+        return List.of(match(encode(filtersOf(query))), facet(facets));
+    }
+
+    /**
+     * Everything after the cursor in the order of its sort, the page then costs the same at any depth.
+     */
+    private static Bson seek(ProductCursor cursor) {
+        var lastId = new ObjectId(cursor.productId());
+        return switch (cursor.sort()) {
+            case DEFAULT -> gt("_id", lastId);
+            case NEWEST -> lt("_id", lastId);
+            case PRICE_ASC -> or(gt("price", cursor.price()), and(eq("price", cursor.price()), gt("_id", lastId)));
+            case PRICE_DESC -> or(lt("price", cursor.price()), and(eq("price", cursor.price()), lt("_id", lastId)));
+        };
+    }
+
+    /**
+     * The order of the sort, always ending with {@code _id} so it is total and a cursor can seek on it.
+     */
+    static Bson sort(ProductSort sort) {
+        return switch (sort) {
+            case DEFAULT -> ascending("_id");
+            case NEWEST -> descending("_id");
+            case PRICE_ASC -> ascending("price", "_id");
+            case PRICE_DESC -> descending("price", "_id");
+        };
+    }
+
+    /**
+     * The indexes of the queries of the category, equality fields first, then the price range, then {@code _id}.
+     */
+    static List<IndexModel> indexes(ProductCategory category) {
+        var indexes = new ArrayList<IndexModel>(4);
+        indexes.add(new IndexModel(ascending("category", "_id"), new IndexOptions().name("category_id")));
+        indexes.add(new IndexModel(ascending("category", "price", "_id"), new IndexOptions().name("category_price_id")));
+        switch (category) {
+            case LAPTOP -> indexes.add(new IndexModel(ascending("category", "ram", "price", "_id"),
+                    new IndexOptions().name("category_ram_price_id")));
+        }
+        return indexes;
+    }
+
+    /**
+     * A query of every shape of the category, for checking their plans.
+     */
+    static List<ProductQuery> representativeQueries(ProductCategory category) {
+        var lastId = new ObjectId().toHexString();
+        var queries = new ArrayList<ProductQuery>();
+        for (ProductSort sort : ProductSort.values()) {
+            var cursor = new ProductCursor(sort, 1000, lastId);
+            queries.addAll(switch (category) {
+                case LAPTOP -> List.of(
+                        new ProductQuery.ForLaptop(null, null, null, null, null, sort, null, ProductQuery.DEFAULT_PAGE_SIZE),
+                        new ProductQuery.ForLaptop(null, null, null, null, null, sort, cursor, ProductQuery.DEFAULT_PAGE_SIZE),
+                        new ProductQuery.ForLaptop(500, 1500, null, null, null, sort, cursor, ProductQuery.DEFAULT_PAGE_SIZE),
+                        new ProductQuery.ForLaptop(null, null, null, null, 16, sort, cursor, ProductQuery.DEFAULT_PAGE_SIZE),
+                        new ProductQuery.ForLaptop(500, 1500, null, null, 16, sort, null, ProductQuery.DEFAULT_PAGE_SIZE));
+            });
+        }
+        queries.add(new ProductQuery.ForLaptop(null, null, null, lastId, null, ProductSort.DEFAULT, null, ProductQuery.DEFAULT_PAGE_SIZE));
+        return queries;
+    }
+}
@@ -0,0 +1,264 @@
+package com.sellersphere.productservice.logic;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sellersphere.productservice.data.IngestionFormat;
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.rest.InvalidUploadException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Reads the products of an upload one line at a time, checking every record against the fields of its category.
+ * <p>
+ * Only the current line is held in memory, a record breaking the schema is returned as
+ * {@link ProductRecord.Invalid} and reading goes on with the next line.
+ */
+abstract sealed class ProductRecordReader implements Closeable {
+
+    sealed interface ProductRecord {
+        long line();
+
+        record Valid(long line, Product product) implements ProductRecord {
+        }
+
+        record Invalid(long line, String message) implements ProductRecord {
+        }
+    }
+
+    enum FieldType { TEXT, WHOLE_NUMBER, TEXT_LIST }
+
+    record Field(FieldType type, boolean required) {
+    }
+
+    private static final Map<String, Field> LAPTOP_FIELDS = Map.of(
+            "productName", new Field(FieldType.TEXT, true),
+            "quantity", new Field(FieldType.WHOLE_NUMBER, true),
+            "price", new Field(FieldType.WHOLE_NUMBER, true),
+            "ram", new Field(FieldType.WHOLE_NUMBER, true),
+            "images", new Field(FieldType.TEXT_LIST, false),
+            "description", new Field(FieldType.TEXT, false));
+
+    static Map<String, Field> schema(ProductCategory category) {
+        return switch (category) {
+            case LAPTOP -> LAPTOP_FIELDS;
+        };
+    }
+
+    static ProductRecordReader of(IngestionFormat format, ProductCategory category, Reader upload)
+            throws IOException, InvalidUploadException {
+        var reader = new BufferedReader(upload);
+        return switch (format) {
+            case NDJSON -> new Ndjson(category, reader);
+            case CSV -> new Csv(category, reader);
+        };
+    }
+
+    private final ProductCategory category;
+    private final BufferedReader reader;
+    final Map<String, Field> schema;
+    long line;
+
+    private ProductRecordReader(ProductCategory category, BufferedReader reader) {
+        this.category = category;
+        this.reader = reader;
+        this.schema = schema(category);
+    }
+
+    /**
+     * @return the record of the next non-blank line, or null at the end of the upload
+     */
+    ProductRecord next() throws IOException {
+        String text;
+        while ((text = readLine()) != null) {
+            if (text.isBlank()) continue;
+            try {
+                return new ProductRecord.Valid(line, toProduct(fields(text)));
+            } catch (InvalidRecordException e) {
+                return new ProductRecord.Invalid(line, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    final String readLine() throws IOException {
+        var text = reader.readLine();
+        if (text != null) line++;
+        return text;
+    }
+
+    /**
+     * The values of the line by field name, absent fields left out.
+     */
+    abstract Map<String, Object> fields(String text) throws InvalidRecordException;
+
+    private Product toProduct(Map<String, Object> fields) throws InvalidRecordException {
+        for (String name : fields.keySet()) {
+            if (!schema.containsKey(name)) throw new InvalidRecordException("Unknown field " + name);
+        }
+        for (var entry : schema.entrySet()) {
+            var value = fields.get(entry.getKey());
+            if (value == null) {
+                if (entry.getValue().required()) throw new InvalidRecordException("Missing field " + entry.getKey());
+                continue;
+            }
+            var valid = switch (entry.getValue().type()) {
+                case TEXT -> value instanceof String;
+                case WHOLE_NUMBER -> value instanceof Integer;
+                case TEXT_LIST -> value instanceof List<?> list && list.stream().allMatch(String.class::isInstance);
+            };
+            if (!valid) throw new InvalidRecordException("Invalid %s: %s".formatted(entry.getKey(), value));
+        }
+        var productName = ((String) fields.get("productName")).strip();
+        if (productName.isEmpty()) throw new InvalidRecordException("Blank productName");
+        return switch (category) {
+            case LAPTOP -> new Laptop(null, productName,
+                    number(fields, "quantity", 0), number(fields, "price", 1), number(fields, "ram", 1),
+                    textList(fields, "images"), (String) fields.getOrDefault("description", ""));
+        };
+    }
+
+    private static int number(Map<String, Object> fields, String name, int minimum) throws InvalidRecordException {
+        int value = (Integer) fields.get(name);
+        if (value < minimum) throw new InvalidRecordException("%s must be at least %d".formatted(name, minimum));
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> textList(Map<String, Object> fields, String name) {
+        return (List<String>) fields.getOrDefault(name, List.of());
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static final class InvalidRecordException extends Exception {
+        InvalidRecordException(String msg) {
+            super(msg);
+        }
+    }
+
+    static final class Ndjson extends ProductRecordReader {
+
+        // a line holds exactly one object
+        private static final ObjectMapper JSON = new ObjectMapper()
+                .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        private static final TypeReference<LinkedHashMap<String, Object>> OBJECT = new TypeReference<>() {
+        };
+
+        Ndjson(ProductCategory category, BufferedReader reader) {
+            super(category, reader);
+        }
+
+        @Override
+        Map<String, Object> fields(String text) throws InvalidRecordException {
+            Map<String, Object> fields;
+            try {
+                fields = JSON.readValue(text, OBJECT);
+            } catch (JsonProcessingException e) {
+                throw new InvalidRecordException("Malformed JSON: " + e.getOriginalMessage());
+            }
+            if (fields == null) throw new InvalidRecordException("Expected a JSON object");
+            fields.values().removeIf(Objects::isNull);
+            return fields;
+        }
+    }
+
+    /**
+     * Comma separated values with optional double quotes, a record cannot span lines.
+     * The images are separated by {@code |} in their column.
+     */
+    static final class Csv extends ProductRecordReader {
+
+        private final List<String> columns;
+
+        Csv(ProductCategory category, BufferedReader reader) throws IOException, InvalidUploadException {
+            super(category, reader);
+            String header;
+            do {
+                header = readLine();
+                if (header == null) throw new InvalidUploadException("Missing CSV header");
+            } while (header.isBlank());
+            try {
+                columns = split(header).stream().map(String::strip).toList();
+            } catch (InvalidRecordException e) {
+                throw new InvalidUploadException("Invalid CSV header: " + e.getMessage());
+            }
+            for (String column : columns) {
+                if (!schema.containsKey(column)) throw new InvalidUploadException("Unknown column " + column);
+                if (columns.indexOf(column) != columns.lastIndexOf(column)) {
+                    throw new InvalidUploadException("Duplicate column " + column);
+                }
+            }
+            for (var entry : schema.entrySet()) {
+                if (entry.getValue().required() && !columns.contains(entry.getKey())) {
+                    throw new InvalidUploadException("Missing column " + entry.getKey());
+                }
+            }
+        }
+
+        @Override
+        Map<String, Object> fields(String text) throws InvalidRecordException {
+            var values = split(text);
+            if (values.size() != columns.size()) {
+                throw new InvalidRecordException("Expected %d values, found %d".formatted(columns.size(), values.size()));
+            }
+            var fields = HashMap.<String, Object>newHashMap(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                var value = values.get(i);
+                if (value.isEmpty()) continue;
+                var column = columns.get(i);
+                fields.put(column, switch (schema.get(column).type()) {
+                    case TEXT -> value;
+                    case WHOLE_NUMBER -> {
+                        try {
+                            yield Integer.parseInt(value.strip());
+                        } catch (NumberFormatException e) {
+                            throw new InvalidRecordException("Invalid %s: %s".formatted(column, value));
+                        }
+                    }
+                    case TEXT_LIST -> Arrays.stream(value.split("\\|")).map(String::strip).filter(s -> !s.isEmpty()).toList();
+                });
+            }
+            return fields;
+        }
+
+        static List<String> split(String text) throws InvalidRecordException {
+            var values = new ArrayList<String>();
+            var value = new StringBuilder();
+            int i = 0;
+            while (true) {
+                if (i < text.length() && text.charAt(i) == '"') {
+                    // a quoted value, "" is an escaped quote
+                    i++;
+                    while (true) {
+                        if (i == text.length()) throw new InvalidRecordException("Unterminated quote");
+                        char c = text.charAt(i++);
+                        if (c != '"') value.append(c);
+                        else if (i < text.length() && text.charAt(i) == '"') value.append(text.charAt(i++));
+                        else break;
+                    }
+                    if (i < text.length() && text.charAt(i) != ',') {
+                        throw new InvalidRecordException("Unexpected character after a quoted value at column " + (i + 1));
+                    }
+                } else {
+                    while (i < text.length() && text.charAt(i) != ',') value.append(text.charAt(i++));
+                }
+                values.add(value.toString());
+                value.setLength(0);
+                if (i == text.length()) return values;
+                i++; // the comma
+            }
+        }
+    }
+}
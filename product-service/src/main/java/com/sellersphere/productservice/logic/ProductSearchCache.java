@@ -0,0 +1,193 @@
+package com.sellersphere.productservice.logic;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the search results per normalized {@link ProductQuery}, kept fresh by the catalog change stream.
+ * <p>
+ * A result older than {@code product.search-cache.refresh-after} is still served while it is
+ * reloaded in the background, so a slow MongoDB does not slow down the searches. Changes of a
+ * product evict the results of its category, except quantity changes which are patched in place
+ * as they do not change which products match.
+ */
+@Component
+@ConditionalOnProperty(name = "product.search-cache.enabled", havingValue = "true")
+public final class ProductSearchCache implements CatalogChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSearchCache.class);
+    private static final Set<String> QUANTITY_FIELDS = Set.of("quantity", "version", "sold");
+
+    private final Cache<ProductQuery, CachedResult> results;
+    private final long refreshAfterNanos;
+    private final Set<ProductQuery> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean live;
+
+    public ProductSearchCache(@Value("${product.search-cache.max-size:1000}") long maxSize,
+                              @Value("${product.search-cache.ttl:PT1M}") Duration ttl,
+                              @Value("${product.search-cache.refresh-after:PT10S}") Duration refreshAfter,
+                              MeterRegistry meterRegistry) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "product-searches");
+    }
+
+    /**
+     * The cached result of the query, loaded once by concurrent misses.
+     *
+     * @param search runs the query against MongoDB
+     */
+    public List<ProductView> get(ProductQuery query, Supplier<List<ProductView>> search) {
+        if (!live) return search.get();
+        var key = normalize(query);
+        long searchedIn = generation.get();
+        var cached = results.get(key, _ -> new CachedResult(List.copyOf(search.get()), System.nanoTime()));
+        // evictions and patches skip the searches in progress, a change applied during this one could not reach it
+        if (generation.get() != searchedIn) results.asMap().remove(key, cached);
+        if (System.nanoTime() - cached.loadedAt() > refreshAfterNanos && refreshing.add(key)) {
+            refresher.execute(() -> refresh(key, cached, search));
+        }
+        return cached.views();
+    }
+
+    private void refresh(ProductQuery key, CachedResult stale, Supplier<List<ProductView>> search) {
+        try {
+            var fresh = new CachedResult(List.copyOf(search.get()), System.nanoTime());
+            // lost if the result was evicted or patched in between, the next search loads it again
+            results.asMap().replace(key, stale, fresh);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not refresh the cached search {}", key, e);
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * The same query for every spelling of its parameters.
+     */
+    static ProductQuery normalize(ProductQuery query) {
+        var lastId = query.lastId() == null ? null : query.lastId().toLowerCase(Locale.ROOT);
+        return switch (query) {
+            case ProductQuery.ForLaptop forLaptop -> new ProductQuery.ForLaptop(forLaptop.minPrice(), forLaptop.maxPrice(), forLaptop.text(), lastId,
+                    forLaptop.ram(), forLaptop.sort(), forLaptop.cursor(), forLaptop.pageSize());
+        };
+    }
+
+    @Override
+    public void onStreamOpened() {
+        invalidateAll();
+        live = true;
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        var product = change.getFullDocument();
+        var category = categoryOf(product);
+        generation.incrementAndGet();
+        if (category == null || change.getOperationType() == OperationType.REPLACE || changesCategory(change.getUpdateDescription())) {
+            // the category before the change is unknown, or the product is not in a known category
+            results.invalidateAll();
+            return;
+        }
+        if (onlyQuantityChanged(change.getUpdateDescription())) {
+            var productId = product.getObjectId("_id").toHexString();
+            int quantity = product.getInteger("quantity");
+            for (ProductQuery query : results.asMap().keySet()) {
+                if (query.category() != category) continue;
+                results.asMap().computeIfPresent(query, (_, cached) -> cached.withQuantity(productId, quantity));
+            }
+            return;
+        }
+        results.asMap().keySet().removeIf(query -> query.category() == category);
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+        invalidateAll();
+    }
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        results.invalidateAll();
+    }
+
+    /**
+     * The category of a changed product, null if it was deleted or its category is missing or unknown.
+     */
+    static ProductCategory categoryOf(Document product) {
+        if (product == null || !(product.get("category") instanceof String category)) return null;
+        try {
+            return ProductCategory.valueOf(category);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static boolean changesCategory(UpdateDescription update) {
+        if (update == null) return false;
+        return (update.getUpdatedFields() != null && update.getUpdatedFields().containsKey("category"))
+                || (update.getRemovedFields() != null && update.getRemovedFields().contains("category"));
+    }
+
+    static boolean onlyQuantityChanged(UpdateDescription update) {
+        if (update == null || update.getUpdatedFields() == null) return false;
+        if (update.getRemovedFields() != null && !update.getRemovedFields().isEmpty()) return false;
+        for (String field : update.getUpdatedFields().keySet()) {
+            if (!QUANTITY_FIELDS.contains(field) && !ProductNearCache.isStockFeedOffset(field)) return false;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private record CachedResult(List<ProductView> views, long loadedAt) {
+
+        CachedResult withQuantity(String productId, int quantity) {
+            List<ProductView> patched = null;
+            for (int i = 0; i < views.size(); i++) {
+                var view = views.get(i);
+                if (!view.productId().equals(productId) || view.quantity() == quantity) continue;
+                if (patched == null) patched = new ArrayList<>(views);
+                patched.set(i, new ProductView(view.productId(), view.productName(), view.image(), quantity, view.price()));
+            }
+            return patched == null ? this : new CachedResult(List.copyOf(patched), loadedAt);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Projections.slice;
+
+/**
+ * Answers the product searches from a {@link CatalogIndex} of the whole catalog, without MongoDB.
+ * <p>
+ * The catalog is loaded every time the change stream opens, as changes could have been missed while
+ * it was closed, and then follows the stream. Until the load completes, and while the stream is not
+ * open, {@link #search} is empty and the searches go to MongoDB.
+ * <p>
+ * With {@code product.search-engine.snapshot.path} the engine writes a {@link CatalogSnapshot} every
+ * {@code product.search-engine.snapshot.interval} and on shutdown, and starts from it: the stream
+ * resumes after the snapshot and only the changes since are applied, instead of loading the catalog.
+ * A snapshot can be older than the engine that writes it, the changes it replays on resume are
+ * applied again with their looked up products and end in the same state.
+ */
+@Component
+@ConditionalOnProperty(name = "product.search-engine.enabled", havingValue = "true")
+public final class ProductSearchEngine implements CatalogChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSearchEngine.class);
+    static final Bson INDEXED_FIELDS = fields(
+            include("_id", "category", "price", "ram", "quantity", "productName"), slice("images", 1));
+
+    private final MongoCollection<Document> products;
+    private final Path snapshotFile;
+    private final ScheduledExecutorService snapshotWriter;
+    private volatile CatalogIndex index = new CatalogIndex(0);
+    private volatile boolean live;
+    private BsonDocument snapshotToken;
+
+    public ProductSearchEngine(MongoClient mongoClient, MeterRegistry meterRegistry,
+                               @Value("${product.search-engine.snapshot.path:}") String snapshotPath,
+                               @Value("${product.search-engine.snapshot.interval:PT5M}") Duration snapshotInterval) {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        Gauge.builder("product.search-engine.products", this, engine -> engine.index.size())
+                .description("The products in the search engine")
+                .register(meterRegistry);
+        if (snapshotPath.isBlank()) {
+            this.snapshotFile = null;
+            this.snapshotWriter = null;
+            return;
+        }
+        this.snapshotFile = Path.of(snapshotPath);
+        if (Files.exists(snapshotFile)) readSnapshot();
+        this.snapshotWriter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("catalog-snapshot").factory());
+        snapshotWriter.scheduleWithFixedDelay(this::writeSnapshotSafely,
+                snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void readSnapshot() {
+        long start = System.nanoTime();
+        try {
+            var columns = CatalogSnapshot.read(snapshotFile);
+            if (columns.resumeToken() == null) return;
+            index = new CatalogIndex(columns);
+            snapshotToken = columns.resumeToken();
+            LOGGER.info("Read {} products from the catalog snapshot in {} ms", columns.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the catalog snapshot {}, loading the catalog", snapshotFile, e);
+        }
+    }
+
+    /**
+     * @return empty if the engine is not in sync with the catalog, or for a text query
+     */
+    public Optional<List<ProductView>> search(ProductQuery query) throws InvalidProductQueryException {
+        if (!live || query.text() != null) return Optional.empty();
+        return Optional.of(index.search(query));
+    }
+
+    @Override
+    public BsonDocument resumeToken() {
+        return index.resumeToken();
+    }
+
+    @Override
+    public void onStreamResumed() {
+        live = true;
+        LOGGER.info("Resumed the search engine with {} products", index.size());
+    }
+
+    @Override
+    public void onStreamOpened() {
+        long start = System.nanoTime();
+        // drop the stale catalog first, the two would not fit together in a small heap
+        index = new CatalogIndex(0);
+        var loaded = new CatalogIndex((int) products.estimatedDocumentCount());
+        for (Document document : products.find().projection(INDEXED_FIELDS).batchSize(10_000)) {
+            var row = toRow(document);
+            if (row != null) loaded.append(row);
+        }
+        loaded.seal();
+        index = loaded;
+        live = true;
+        LOGGER.info("Loaded {} products into the search engine in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        apply(change);
+        index.advance(change.getResumeToken());
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // null when the product was deleted before the lookup, its delete follows
+                if (change.getFullDocument() == null) return;
+                var row = toRow(change.getFullDocument());
+                if (row != null) index.upsert(row);
+                else index.remove(change.getDocumentKey().getObjectId("_id").getValue());
+            }
+            case DELETE -> index.remove(change.getDocumentKey().getObjectId("_id").getValue());
+            case DROP, DROP_DATABASE, RENAME -> index = new CatalogIndex(0);
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onCaughtUp(BsonDocument resumeToken) {
+        index.advance(resumeToken);
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+    }
+
+    private void writeSnapshotSafely() {
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not write the catalog snapshot {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes the catalog if it changed since the last snapshot, not while it loads.
+     */
+    private void writeSnapshot() throws IOException {
+        var columns = index.columns();
+        if (columns.resumeToken() == null || columns.resumeToken().equals(snapshotToken)) return;
+        long start = System.nanoTime();
+        CatalogSnapshot.write(columns, snapshotFile);
+        snapshotToken = columns.resumeToken();
+        LOGGER.info("Wrote {} products to the catalog snapshot in {} ms", columns.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (snapshotWriter == null) return;
+        snapshotWriter.shutdown();
+        snapshotWriter.awaitTermination(5, TimeUnit.SECONDS);
+        writeSnapshotSafely();
+    }
+
+    /**
+     * @return null for a document that is not a product of a known category
+     */
+    static CatalogIndex.Row toRow(Document document) {
+        var category = ProductSearchCache.categoryOf(document);
+        if (category == null || !(document.get("_id") instanceof ObjectId id)) return null;
+        var images = document.getList("images", String.class);
+        return new CatalogIndex.Row(id, category, number(document, "price"), number(document, "ram"),
+                number(document, "quantity"), document.getString("productName"),
+                images == null || images.isEmpty() ? null : images.getFirst());
+    }
+
+    private static int number(Document document, String field) {
+        return document.get(field) instanceof Number number ? number.intValue() : 0;
+    }
+}
@@ -1,16 +1,45 @@
 package com.sellersphere.productservice.logic;
 
 import com.sellersphere.productservice.data.Product;
-import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductFacets;
+import com.sellersphere.productservice.data.ProductLookup;
+import com.sellersphere.productservice.data.ProductPage;
 import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSuggestion;
 import com.sellersphere.productservice.rest.InvalidProductQueryException;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 public interface ProductService {
 
-    List<ProductView> searchProducts(ProductQuery query) throws InvalidProductQueryException;
+    ProductPage searchProducts(ProductQuery query) throws InvalidProductQueryException;
+
+    /**
+     * Counts the products matching the filters of the query, its page and sort are ignored.
+     */
+    ProductFacets findFacets(ProductQuery query) throws InvalidProductQueryException;
+
+    /**
+     * The most popular products of the category with a word of their name starting with the prefix.
+     *
+     * @param prefix a prefix of {@link ProductSuggestion#normalize}
+     */
+    List<ProductSuggestion> suggestProducts(ProductCategory category, String prefix, int limit);
 
     Optional<Product> findProductById(String productId);
+
+    /**
+     * The version of the product, incremented on every change of its stock, without reading the whole product.
+     */
+    OptionalLong findProductVersion(String productId);
+
+    /**
+     * Looks up many products with a single query.
+     *
+     * @return a lookup per id, in the order of the ids, with the ids that are not products marked as not found
+     */
+    List<ProductLookup> findProductViews(List<String> productIds);
 }
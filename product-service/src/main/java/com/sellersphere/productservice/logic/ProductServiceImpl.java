@@ -2,36 +2,145 @@ package com.sellersphere.productservice.logic;
 
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.Filters;
+import com.sellersphere.productservice.codec.ProductCodecs;
 import com.sellersphere.productservice.data.*;
 import com.sellersphere.productservice.rest.InvalidProductQueryException;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.OptionalLong;
 
-import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Indexes.descending;
+import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Projections.slice;
 
 @Service
 public final class ProductServiceImpl implements ProductService {
 
+    /**
+     * The fields of a {@link ProductView}, of the images only the first is sent.
+     */
+    static final Bson PRODUCT_VIEW_FIELDS = fields(include("_id", "productName", "price", "quantity"), slice("images", 1));
+
     private final MongoCollection<Document> products;
+    private final ProductNearCache nearCache;
+    private final ProductSearchCache searchCache;
+    private final ProductSearchEngine searchEngine;
+    private final ProductFacetCache facetCache;
+    private final ProductTextIndex textIndex;
+    private final ProductSuggester suggester;
+    private final List<Integer> priceBuckets;
 
-    public ProductServiceImpl(MongoClient mongoClient){
-        products = mongoClient.getDatabase("sellersphere").getCollection("products");
+    public ProductServiceImpl(MongoClient mongoClient, ObjectProvider<ProductNearCache> nearCache,
+                              ObjectProvider<ProductSearchCache> searchCache,
+                              ObjectProvider<ProductSearchEngine> searchEngine,
+                              ObjectProvider<ProductFacetCache> facetCache,
+                              ObjectProvider<ProductTextIndex> textIndex,
+                              ObjectProvider<ProductSuggester> suggester,
+                              @Value("${product.facets.price-buckets:0,250,500,1000,1500,2000}") List<Integer> priceBuckets){
+        products = mongoClient.getDatabase("sellersphere").getCollection("products")
+                .withCodecRegistry(ProductCodecs.REGISTRY);
+        this.nearCache = nearCache.getIfAvailable();
+        this.searchCache = searchCache.getIfAvailable();
+        this.searchEngine = searchEngine.getIfAvailable();
+        this.facetCache = facetCache.getIfAvailable();
+        this.textIndex = textIndex.getIfAvailable();
+        this.suggester = suggester.getIfAvailable();
+        // the $bucket stage needs at least a boundary, an empty property is a misconfiguration
+        if (priceBuckets.isEmpty()) throw new IllegalArgumentException("product.facets.price-buckets must have at least one bucket");
+        for (int i = 1; i < priceBuckets.size(); i++) {
+            if (priceBuckets.get(i) <= priceBuckets.get(i - 1)) throw new IllegalArgumentException("The price buckets must be ascending");
+        }
+        this.priceBuckets = List.copyOf(priceBuckets);
     }
 
     @Override
-    public List<ProductView> searchProducts(ProductQuery query) throws InvalidProductQueryException {
-        return products.find(encodeProductQuery(query)).limit(15)
-                .projection(include("_id", "productName", "price", "quantity", "images"))
-                .map(this::decodeProductOverview)
-                .into(new ArrayList<>(15));
+    public ProductPage searchProducts(ProductQuery query) throws InvalidProductQueryException {
+        var fromIndex = Optional.<List<ProductView>>empty();
+        if (query.text() != null && textIndex != null) fromIndex = textIndex.search(query);
+        else if (searchEngine != null) fromIndex = searchEngine.search(query);
+        if (fromIndex.isPresent()) return new ProductPage(fromIndex.get(), nextCursor(query, fromIndex.get()));
+        var filter = ProductQueryEncoder.encode(query);
+        var views = searchCache != null
+                ? searchCache.get(query, () -> findProductViews(query, filter))
+                : findProductViews(query, filter);
+        return new ProductPage(views, nextCursor(query, views));
+    }
+
+    private List<ProductView> findProductViews(ProductQuery query, Bson filter) {
+        return products.find(filter, ProductView.class)
+                .sort(ProductQueryEncoder.sort(query.sort()))
+                .limit(query.pageSize())
+                .projection(PRODUCT_VIEW_FIELDS)
+                .into(new ArrayList<>(query.pageSize()));
+    }
+
+    @Override
+    public ProductFacets findFacets(ProductQuery query) throws InvalidProductQueryException {
+        var filters = ProductQueryEncoder.filtersOf(query);
+        var pipeline = ProductQueryEncoder.facets(filters, priceBuckets);
+        return facetCache != null
+                ? facetCache.get(filters, () -> aggregateFacets(pipeline))
+                : aggregateFacets(pipeline);
+    }
+
+    private ProductFacets aggregateFacets(List<Bson> pipeline) {
+        var result = products.aggregate(pipeline).first();
+        var total = result.getList("total", Document.class);
+        var bucketCounts = new HashMap<Integer, Long>();
+        for (Document bucket : result.getList("prices", Document.class)) {
+            // the default bucket holds the products priced below the first bucket
+            if (bucket.get("_id") instanceof Integer from) bucketCounts.put(from, count(bucket));
+        }
+        var prices = new ArrayList<ProductFacets.PriceBucket>(priceBuckets.size());
+        for (int i = 0; i < priceBuckets.size(); i++) {
+            var to = i + 1 < priceBuckets.size() ? priceBuckets.get(i + 1) : null;
+            prices.add(new ProductFacets.PriceBucket(priceBuckets.get(i), to, bucketCounts.getOrDefault(priceBuckets.get(i), 0L)));
+        }
+        var ram = new ArrayList<ProductFacets.ValueCount>();
+        for (Document value : result.getList("ram", Document.class, List.of())) {
+            if (value.get("_id") instanceof Number size) ram.add(new ProductFacets.ValueCount(size.intValue(), count(value)));
+        }
+        ram.sort(Comparator.comparingLong(ProductFacets.ValueCount::count).reversed()
+                .thenComparingInt(ProductFacets.ValueCount::value));
+        return new ProductFacets(total.isEmpty() ? 0 : count(total.getFirst()), List.copyOf(prices), List.copyOf(ram));
+    }
+
+    private static long count(Document document) {
+        return ((Number) document.get("count")).longValue();
+    }
+
+    @Override
+    public List<ProductSuggestion> suggestProducts(ProductCategory category, String prefix, int limit) {
+        if (suggester != null) {
+            var suggested = suggester.suggest(category, prefix, limit);
+            if (suggested.isPresent()) return suggested.get();
+        }
+        return products.find(ProductQueryEncoder.suggestions(category, prefix))
+                .projection(include("_id", "productName"))
+                .sort(descending("sold", "_id"))
+                .limit(limit)
+                .map(document -> new ProductSuggestion(document.getObjectId("_id").toHexString(), document.getString("productName")))
+                .into(new ArrayList<>(limit));
+    }
+
+    private static String nextCursor(ProductQuery query, List<ProductView> views) {
+        if (views.size() < query.pageSize()) return null;
+        var last = views.getLast();
+        return new ProductCursor(query.sort(), last.price(), last.productId()).encode();
     }
 
     @Override
@@ -42,15 +151,73 @@ public final class ProductServiceImpl implements ProductService {
         } catch (IllegalArgumentException e){
             return Optional.empty();
         }
-        var first = products.find(eq("_id", objectId)).first();
-        if (first == null) return Optional.empty();
-        var category = ProductCategory.valueOf(first.getString("category"));
-        return Optional.of(switch (category) {
-            case LAPTOP -> decodeProduct(category, first);
-        });
+        if (nearCache != null) return nearCache.get(objectId, this::findProductDocument);
+        return Optional.ofNullable(products.find(eq("_id", objectId), Product.class).first());
+    }
+
+    @Override
+    public OptionalLong findProductVersion(String productId) {
+        if (!ObjectId.isValid(productId)) return OptionalLong.empty();
+        var objectId = new ObjectId(productId);
+        if (nearCache != null) {
+            var cached = nearCache.getVersionIfPresent(objectId);
+            if (cached.isPresent()) return cached;
+        }
+        var document = products.find(eq("_id", objectId)).projection(include("version")).first();
+        if (document == null) return OptionalLong.empty();
+        return OptionalLong.of(document.get("version") instanceof Number version ? version.longValue() : 0);
+    }
+
+    @Override
+    public List<ProductLookup> findProductViews(List<String> productIds) {
+        // keyed by the lower case hex of the ids, as the views read back carry it
+        var views = HashMap.<String, ProductView>newHashMap(productIds.size());
+        var missing = new ArrayList<ObjectId>(productIds.size());
+        for (String productId : productIds) {
+            if (!ObjectId.isValid(productId)) continue;
+            var objectId = new ObjectId(productId);
+            if (views.containsKey(objectId.toHexString())) continue;
+            var cached = nearCache == null ? Optional.<Product>empty() : nearCache.getIfPresent(objectId);
+            // a placeholder, so duplicate ids are queried once
+            views.put(objectId.toHexString(), cached.map(ProductServiceImpl::toProductView).orElse(null));
+            if (cached.isEmpty()) missing.add(objectId);
+        }
+        if (!missing.isEmpty()) {
+            products.find(in("_id", missing), ProductView.class)
+                    .projection(PRODUCT_VIEW_FIELDS)
+                    .forEach(view -> views.put(view.productId(), view));
+        }
+        var lookups = new ArrayList<ProductLookup>(productIds.size());
+        for (String productId : productIds) {
+            var view = views.get(productId.toLowerCase(Locale.ROOT));
+            lookups.add(view == null ? ProductLookup.notFound(productId) : new ProductLookup(productId, true, view));
+        }
+        return lookups;
+    }
+
+    /**
+     * The view of a cached product, without an image when it has none, as {@link ProductCodecs} decodes it.
+     */
+    private static ProductView toProductView(Product product) {
+        return switch (product) {
+            case Laptop laptop -> new ProductView(laptop.productId(), laptop.productName(),
+                    firstImage(laptop.images()), laptop.quantity(), laptop.price());
+        };
+    }
+
+    private static String firstImage(List<String> images) {
+        return images == null || images.isEmpty() ? null : images.getFirst();
     }
 
-    private Product decodeProduct(ProductCategory category, Document document) {
+    private Document findProductDocument(ObjectId productId) {
+        return products.find(eq("_id", productId)).first();
+    }
+
+    /**
+     * Decodes the product of a document of the near cache, the search and lookup paths decode with {@link ProductCodecs}.
+     */
+    static Product decodeProduct(Document document) {
+        var category = ProductCategory.valueOf(document.getString("category"));
         String productId = document.getObjectId("_id").toHexString();
         int quantity = document.getInteger("quantity");
         int price = document.getInteger("price");
@@ -64,36 +231,4 @@ public final class ProductServiceImpl implements ProductService {
             }
         };
     }
-
-    private ProductView decodeProductOverview(Document doc) {
-        var productId = doc.getObjectId("_id").toHexString();
-        String productName = doc.getString("productName");
-        int price = doc.getInteger("price");
-        var quantity = doc.getInteger("quantity");
-        String image = doc.getList("images", String.class).getFirst();
-        return new ProductView(productId, productName, image, quantity, price);
-    }
-
-    private Bson encodeProductQuery(ProductQuery query) throws InvalidProductQueryException {
-        ArrayList<Bson> filters = new ArrayList<>(6);
-        filters.add(eq("category", query.category().name()));
-        if (query.lastId() != null) {
-            ObjectId lastId;
-            try {
-                lastId = new ObjectId(query.lastId());
-            } catch (IllegalArgumentException e){
-                throw new InvalidProductQueryException("Invalid lastId");
-            }
-            filters.add(gt("_id", lastId));
-        }
-        if (query.minPrice() != null) filters.add(gte("price", query.minPrice()));
-        if (query.maxPrice() != null) filters.add(lte("price", query.maxPrice()));
-
-        switch (query){
-            case ProductQuery.ForLaptop forLaptop -> {
-                if (forLaptop.ram() != null) filters.add(eq("ram", forLaptop.ram()));
-            }
-        }
-        return filters.size() == 1 ? filters.getFirst() : Filters.and(filters);
-    }
 }
@@ -0,0 +1,112 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductSuggestion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * Suggests the products whose names start with what is typed, from a {@link ProductSuggestionTrie} of the whole catalog.
+ * <p>
+ * The popularity of a product is its {@code sold} count, the units ordered of it. The catalog is loaded
+ * every time the change stream opens and then follows it, every change of a product moves it in the trie.
+ * Until the load completes, and while the stream is not open, {@link #suggest} is empty and the
+ * suggestions go to MongoDB.
+ */
+@Component
+@ConditionalOnProperty(name = "product.suggester.enabled", havingValue = "true")
+public final class ProductSuggester implements CatalogChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSuggester.class);
+    static final Bson SUGGESTED_FIELDS = include("_id", "category", "productName", "sold");
+
+    private final MongoCollection<Document> products;
+    private volatile ProductSuggestionTrie trie = emptyTrie();
+    private volatile boolean live;
+
+    public ProductSuggester(MongoClient mongoClient, MeterRegistry meterRegistry) {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        Gauge.builder("product.suggester.products", this, suggester -> suggester.trie.size())
+                .description("The products in the suggester")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param prefix a prefix of {@link ProductSuggestion#normalize}
+     * @return empty if the suggester is not in sync with the catalog
+     */
+    public Optional<List<ProductSuggestion>> suggest(ProductCategory category, String prefix, int limit) {
+        if (!live) return Optional.empty();
+        return Optional.of(trie.suggest(category, prefix, limit));
+    }
+
+    @Override
+    public void onStreamOpened() {
+        long start = System.nanoTime();
+        trie = emptyTrie();
+        var loaded = new ProductSuggestionTrie(ProductSuggestion.MAX_SUGGESTIONS);
+        for (Document document : products.find().projection(SUGGESTED_FIELDS).batchSize(10_000)) {
+            var entry = toEntry(document);
+            if (entry != null) loaded.upsert(entry);
+        }
+        loaded.seal();
+        trie = loaded;
+        live = true;
+        LOGGER.info("Loaded {} products into the suggester in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // null when the product was deleted before the lookup, its delete follows
+                if (change.getFullDocument() == null) return;
+                var entry = toEntry(change.getFullDocument());
+                if (entry != null) trie.upsert(entry);
+                else trie.remove(change.getDocumentKey().getObjectId("_id").getValue());
+            }
+            case DELETE -> trie.remove(change.getDocumentKey().getObjectId("_id").getValue());
+            case DROP, DROP_DATABASE, RENAME -> trie = emptyTrie();
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+    }
+
+    private static ProductSuggestionTrie emptyTrie() {
+        var trie = new ProductSuggestionTrie(ProductSuggestion.MAX_SUGGESTIONS);
+        trie.seal();
+        return trie;
+    }
+
+    /**
+     * @return null for a document that is not a named product of a known category
+     */
+    static ProductSuggestionTrie.Entry toEntry(Document document) {
+        var category = ProductSearchCache.categoryOf(document);
+        if (category == null || !(document.get("_id") instanceof ObjectId id)
+                || !(document.get("productName") instanceof String productName)) return null;
+        long sold = document.get("sold") instanceof Number number ? number.longValue() : 0;
+        return new ProductSuggestionTrie.Entry(id, category, productName, sold);
+    }
+}
@@ -0,0 +1,496 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductSuggestion;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The product names of the catalog in a compressed trie per category, for the product suggestions.
+ * <p>
+ * A name is {@link ProductSuggestion#normalize normalized} and inserted from each of its first
+ * {@value #WORD_STARTS} words, cut at {@link ProductSuggestion#MAX_PREFIX_LENGTH} characters, so a prefix
+ * reaches the names with a word that starts with it. A node with more than {@code topK} keys below it
+ * holds the {@code topK} most popular of their products, a suggestion walks the prefix and copies that
+ * list, or collects the few keys below a smaller node. A change of a product ranks again only the nodes
+ * on the paths of its keys.
+ * <p>
+ * The edges are ranges of the normalized names instead of copies of their characters.
+ * Any number of suggestions run together, writes are exclusive.
+ */
+final class ProductSuggestionTrie {
+
+    record Entry(ObjectId id, ProductCategory category, String productName, long popularity) {
+    }
+
+    static final int WORD_STARTS = 4;
+    private static final Node[] NO_NODES = {};
+    private static final char[] NO_CHARS = {};
+
+    private final int topK;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node[] roots = new Node[ProductCategory.values().length];
+    private final HashMap<ObjectId, Integer> slots = new HashMap<>();
+
+    private ObjectId[] ids = new ObjectId[16];
+    /** The ids as {@link CatalogIndex#high} and {@link CatalogIndex#low}, ranking compares them. */
+    private long[] idHigh = new long[16];
+    private int[] idLow = new int[16];
+    private String[] productNames = new String[16];
+    private String[] keys = new String[16];
+    private long[] popularity = new long[16];
+    private byte[] category = new byte[16];
+    /** Slots ever allocated, the slots of removed products are reused from free. */
+    private int allocated;
+    private int[] free = new int[16];
+    private int freeCount;
+    /** Before sealing the nodes are not ranked, {@link #seal()} ranks them all at once. */
+    private boolean sealed;
+
+    ProductSuggestionTrie(int topK) {
+        this.topK = topK;
+        for (int i = 0; i < roots.length; i++) roots[i] = new Node("", 0, 0);
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or changes the product, a change of its name or popularity moves its keys, any other change keeps them.
+     */
+    void upsert(Entry entry) {
+        var key = ProductSuggestion.normalize(entry.productName());
+        lock.writeLock().lock();
+        try {
+            var slot = slots.get(entry.id());
+            if (slot != null) {
+                if (category[slot] == entry.category().ordinal() && keys[slot].equals(key)) {
+                    productNames[slot] = entry.productName();
+                    if (popularity[slot] == entry.popularity()) return;
+                    if (sealed && popularity[slot] < entry.popularity()) {
+                        // the common change, an order of the product
+                        popularity[slot] = entry.popularity();
+                        var root = roots[category[slot]];
+                        for (int start : keyStarts(key)) promote(root, key, start, keyEnd(key, start), slot);
+                        return;
+                    }
+                }
+                delete(slot);
+            }
+            if (!key.isEmpty()) add(entry, key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ObjectId id) {
+        lock.writeLock().lock();
+        try {
+            var slot = slots.get(id);
+            if (slot != null) delete(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks every node, after that every change ranks the nodes it passes.
+     */
+    void seal() {
+        lock.writeLock().lock();
+        try {
+            for (Node root : roots) rankAll(root);
+            sealed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The most popular products with a word of their name starting with the normalized prefix, the newest first among equals.
+     */
+    List<ProductSuggestion> suggest(ProductCategory productCategory, String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            var node = roots[productCategory.ordinal()];
+            int from = 0;
+            while (from < prefix.length()) {
+                int child = child(node, prefix.charAt(from));
+                if (child < 0) return List.of();
+                node = node.children[child];
+                // the prefix can end within the edge
+                int length = Math.min(node.length(), prefix.length() - from);
+                if (!node.source.regionMatches(node.start + 1, prefix, from + 1, length - 1)) return List.of();
+                from += node.length();
+            }
+            int[] top = node.top;
+            int count;
+            if (top == null) {
+                top = new int[topK];
+                count = collect(node, top, 0);
+            } else {
+                count = top.length;
+            }
+            var suggestions = new ArrayList<ProductSuggestion>(Math.min(count, limit));
+            for (int i = 0; i < count && i < limit; i++) {
+                suggestions.add(new ProductSuggestion(ids[top[i]].toHexString(), productNames[top[i]]));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Entry entry, String key) {
+        int slot = allocate();
+        ids[slot] = entry.id();
+        idHigh[slot] = CatalogIndex.high(entry.id());
+        idLow[slot] = CatalogIndex.low(entry.id());
+        productNames[slot] = entry.productName();
+        keys[slot] = key;
+        popularity[slot] = entry.popularity();
+        category[slot] = (byte) entry.category().ordinal();
+        slots.put(entry.id(), slot);
+        var root = roots[category[slot]];
+        for (int start : keyStarts(key)) insert(root, key, start, keyEnd(key, start), slot);
+    }
+
+    private void delete(int slot) {
+        var key = keys[slot];
+        var root = roots[category[slot]];
+        for (int start : keyStarts(key)) remove(root, key, start, keyEnd(key, start), slot);
+        slots.remove(ids[slot]);
+        ids[slot] = null;
+        productNames[slot] = null;
+        keys[slot] = null;
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = slot;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) return free[--freeCount];
+        if (allocated == ids.length) {
+            int capacity = allocated * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            productNames = Arrays.copyOf(productNames, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            popularity = Arrays.copyOf(popularity, capacity);
+            category = Arrays.copyOf(category, capacity);
+        }
+        return allocated++;
+    }
+
+    private static int[] keyStarts(String key) {
+        var starts = new int[WORD_STARTS];
+        int count = 0;
+        for (int start = 0; count < WORD_STARTS; start = key.indexOf(' ', start) + 1) {
+            starts[count++] = start;
+            if (key.indexOf(' ', start) < 0) break;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int keyEnd(String key, int start) {
+        return Math.min(key.length(), start + ProductSuggestion.MAX_PREFIX_LENGTH);
+    }
+
+    private void insert(Node node, String key, int from, int to, int slot) {
+        node.keys++;
+        if (from == to) {
+            addProduct(node, slot);
+        } else {
+            int child = child(node, key.charAt(from));
+            if (child < 0) {
+                var leaf = new Node(key, from, to);
+                leaf.product = slot;
+                leaf.productCount = 1;
+                leaf.keys = 1;
+                addChild(node, -child - 1, leaf);
+            } else {
+                var next = node.children[child];
+                // the first characters are equal, one character edges are not read
+                int common = 1;
+                int length = Math.min(next.length(), to - from);
+                while (common < length && next.source.charAt(next.start + common) == key.charAt(from + common)) common++;
+                if (common < next.length()) node.children[child] = next = split(next, common);
+                insert(next, key, from + common, to, slot);
+            }
+        }
+        if (sealed) offerTop(node, slot);
+    }
+
+    private void remove(Node node, String key, int from, int to, int slot) {
+        node.keys--;
+        if (from == to) {
+            removeProduct(node, slot);
+        } else {
+            int child = child(node, key.charAt(from));
+            var next = node.children[child];
+            remove(next, key, from + next.length(), to, slot);
+            if (next.keys == 0) removeChild(node, child);
+            else if (next.productCount == 0 && next.children.length == 1) node.children[child] = merge(next, next.children[0]);
+        }
+        if (!sealed) return;
+        if (node.keys <= topK) node.top = null;
+        else if (node.top != null && indexOf(node.top, node.top.length, slot) >= 0) rank(node);
+    }
+
+    /**
+     * Moves the product up along the path of its key after it became more popular.
+     */
+    private void promote(Node node, String key, int from, int to, int slot) {
+        if (from == to) {
+            if (node.productCount > 1) {
+                int position = indexOf(node.products, node.productCount, slot);
+                while (position > 0 && ranksBefore(slot, node.products[position - 1])) {
+                    node.products[position] = node.products[position - 1];
+                    position--;
+                }
+                node.products[position] = slot;
+            }
+        } else {
+            var next = node.children[child(node, key.charAt(from))];
+            promote(next, key, from + next.length(), to, slot);
+        }
+        offerTop(node, slot);
+    }
+
+    /**
+     * Ranks a product that was added below the node, or became more popular, into its list.
+     * The list keeps its order, the product takes its place in it or stays out.
+     */
+    private void offerTop(Node node, int slot) {
+        if (node.keys <= topK) {
+            node.top = null;
+            return;
+        }
+        var top = node.top;
+        if (top == null || top.length < topK) {
+            // the node just outgrew collecting, or has fewer products than keys
+            rank(node);
+            return;
+        }
+        int position = indexOf(top, top.length, slot);
+        if (position < 0) {
+            offer(top, topK, slot);
+            return;
+        }
+        while (position > 0 && ranksBefore(slot, top[position - 1])) {
+            top[position] = top[position - 1];
+            position--;
+        }
+        top[position] = slot;
+    }
+
+    private static int indexOf(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) return i;
+        }
+        return -1;
+    }
+
+    private void rankAll(Node node) {
+        for (Node child : node.children) rankAll(child);
+        if (node.productCount > 1) {
+            node.products = Arrays.stream(node.products, 0, node.productCount).boxed()
+                    .sorted((a, b) -> ranksBefore(a, b) ? -1 : ranksBefore(b, a) ? 1 : 0)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        rank(node);
+    }
+
+    /**
+     * Keeps the most popular products below the node, from the lists of its children.
+     */
+    private void rank(Node node) {
+        if (node.keys <= topK) {
+            node.top = null;
+            return;
+        }
+        var top = new int[topK];
+        int count = 0;
+        for (int i = 0; i < node.productCount && i < topK; i++) count = offer(top, count, node.productAt(i));
+        for (Node child : node.children) {
+            if (child.top == null) {
+                count = collect(child, top, count);
+            } else {
+                for (int slot : child.top) count = offer(top, count, slot);
+            }
+        }
+        // a product can have several keys below the node
+        node.top = count == topK ? top : Arrays.copyOf(top, count);
+    }
+
+    private int collect(Node node, int[] top, int count) {
+        for (int i = 0; i < node.productCount && i < topK; i++) count = offer(top, count, node.productAt(i));
+        for (Node child : node.children) count = collect(child, top, count);
+        return count;
+    }
+
+    /**
+     * Inserts the slot in its place among the count most popular slots of top, unless it is there or ranks below them all.
+     */
+    private int offer(int[] top, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (top[i] == slot) return count;
+        }
+        int position = count;
+        while (position > 0 && ranksBefore(slot, top[position - 1])) position--;
+        if (position == topK) return count;
+        System.arraycopy(top, position, top, position + 1, Math.min(count, topK - 1) - position);
+        top[position] = slot;
+        return Math.min(count + 1, topK);
+    }
+
+    private boolean ranksBefore(int slot, int other) {
+        if (popularity[slot] != popularity[other]) return popularity[slot] > popularity[other];
+        if (idHigh[slot] != idHigh[other]) return Long.compareUnsigned(idHigh[slot], idHigh[other]) > 0;
+        return Integer.compareUnsigned(idLow[slot], idLow[other]) > 0;
+    }
+
+    /**
+     * @return the index of the child with the first character, or -(its index once added) - 1
+     */
+    private static int child(Node node, char first) {
+        return Arrays.binarySearch(node.firsts, first);
+    }
+
+    /**
+     * Cuts the edge to the node after length characters, the node keeps the rest below a new node.
+     */
+    private static Node split(Node node, int length) {
+        var upper = new Node(node.source, node.start, node.start + length);
+        upper.keys = node.keys;
+        upper.top = node.top == null ? null : node.top.clone();
+        node.start += length;
+        upper.children = new Node[]{ node };
+        upper.firsts = new char[]{ node.first() };
+        return upper;
+    }
+
+    /**
+     * Joins a node without keys of its own to its only child.
+     */
+    private static Node merge(Node node, Node child) {
+        var source = node.source.substring(node.start, node.end) + child.source.substring(child.start, child.end);
+        child.source = source;
+        child.start = 0;
+        child.end = source.length();
+        return child;
+    }
+
+    /**
+     * Adds the product to those ending at the node, in their order once sealed.
+     */
+    private void addProduct(Node node, int slot) {
+        if (node.productCount == 0) {
+            node.product = slot;
+            node.productCount = 1;
+            return;
+        }
+        if (node.productCount == 1) {
+            node.products = new int[]{ node.product, 0 };
+        } else if (node.productCount == node.products.length) {
+            node.products = Arrays.copyOf(node.products, node.productCount * 2);
+        }
+        int position = node.productCount;
+        if (sealed) {
+            while (position > 0 && ranksBefore(slot, node.products[position - 1])) position--;
+            System.arraycopy(node.products, position, node.products, position + 1, node.productCount - position);
+        }
+        node.products[position] = slot;
+        node.productCount++;
+    }
+
+    private static void removeProduct(Node node, int slot) {
+        if (node.productCount == 1) {
+            node.productCount = 0;
+            return;
+        }
+        int position = 0;
+        while (node.products[position] != slot) position++;
+        System.arraycopy(node.products, position + 1, node.products, position, node.productCount - position - 1);
+        if (--node.productCount == 1) {
+            node.product = node.products[0];
+            node.products = null;
+        }
+    }
+
+    private static void addChild(Node node, int index, Node child) {
+        var children = new Node[node.children.length + 1];
+        var firsts = new char[children.length];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.firsts, 0, firsts, 0, index);
+        children[index] = child;
+        firsts[index] = child.first();
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        System.arraycopy(node.firsts, index, firsts, index + 1, node.firsts.length - index);
+        node.children = children;
+        node.firsts = firsts;
+    }
+
+    private static void removeChild(Node node, int index) {
+        if (node.children.length == 1) {
+            node.children = NO_NODES;
+            node.firsts = NO_CHARS;
+            return;
+        }
+        var children = new Node[node.children.length - 1];
+        var firsts = new char[children.length];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.firsts, 0, firsts, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        System.arraycopy(node.firsts, index + 1, firsts, index, firsts.length - index);
+        node.children = children;
+        node.firsts = firsts;
+    }
+
+    private static final class Node {
+        /** The edge from the parent, the characters of source from start to end. */
+        String source;
+        int start, end;
+        /** In the order of the first characters of their edges, which are in firsts. */
+        Node[] children = NO_NODES;
+        char[] firsts = NO_CHARS;
+        /** The products with a key ending here, a single one is held in product, several in products, the most popular first. */
+        int product;
+        int[] products;
+        int productCount;
+        /** The keys ending here and below. */
+        int keys;
+        /** The most popular products below, null while there are at most topK keys. */
+        int[] top;
+
+        Node(String source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        int length() {
+            return end - start;
+        }
+
+        char first() {
+            return source.charAt(start);
+        }
+
+        int productAt(int index) {
+            return productCount == 1 ? product : products[index];
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.sellersphere.productservice.catalog.CatalogChangeListener;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Projections.slice;
+
+/**
+ * A Lucene index of the names and descriptions of the products, answering the searches with a text.
+ * <p>
+ * The index is rebuilt every time the change stream opens and then follows it, and its searcher is
+ * reopened every {@code product.text-index.max-staleness} to see the changes. The price and ram
+ * filters are points and the sort keys doc values of the same documents, so a text search is a single
+ * Lucene query, sorted by the index itself for the default sort. Every
+ * {@code product.text-index.commit-interval} the index is committed with the resume token of the
+ * changes it holds, and a restart on the same {@code product.text-index.path} resumes the stream
+ * after it instead of rebuilding. Without a path every instance indexes in a temporary directory of its
+ * own, deleted on shutdown, as two instances cannot share an index.
+ */
+@Component
+@ConditionalOnProperty(name = "product.text-index.enabled", havingValue = "true")
+public final class ProductTextIndex implements CatalogChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductTextIndex.class);
+    static final Bson INDEXED_FIELDS = fields(
+            include("_id", "category", "price", "ram", "quantity", "productName", "description"), slice("images", 1));
+    private static final String RESUME_TOKEN = "resumeToken";
+    private static final SortField ID = new SortField("id", SortField.Type.STRING);
+    private static final SortField PRICE = new SortField("price", SortField.Type.INT);
+
+    private final MongoCollection<org.bson.Document> products;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Path temporaryPath;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService maintainer;
+    private volatile BsonDocument resumeToken;
+    private volatile boolean live;
+    private BsonDocument committedToken;
+
+    public ProductTextIndex(MongoClient mongoClient, MeterRegistry meterRegistry,
+                            @Value("${product.text-index.path:}") String path,
+                            @Value("${product.text-index.max-staleness:PT1S}") Duration maxStaleness,
+                            @Value("${product.text-index.commit-interval:PT1M}") Duration commitInterval) throws IOException {
+        this.products = mongoClient.getDatabase("sellersphere").getCollection("products");
+        this.temporaryPath = path.isEmpty() ? Files.createTempDirectory("product-text-index-") : null;
+        this.writer = openWriter(temporaryPath != null ? temporaryPath : Path.of(path));
+        this.resumeToken = committedToken = committedResumeToken(writer);
+        this.searcherManager = new SearcherManager(writer, null);
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("product-text-index").factory());
+        maintainer.scheduleWithFixedDelay(this::refreshSafely, maxStaleness.toMillis(), maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+        maintainer.scheduleWithFixedDelay(this::commitSafely, commitInterval.toMillis(), commitInterval.toMillis(), TimeUnit.MILLISECONDS);
+        Gauge.builder("product.text-index.products", writer, indexWriter -> indexWriter.getDocStats().numDocs)
+                .description("The products in the text index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the index in the path, recreating it only if it cannot be read. Any other failure, as the
+     * lock of an instance already using the path, fails the startup instead of wiping the index.
+     */
+    private IndexWriter openWriter(Path path) throws IOException {
+        var directory = FSDirectory.open(path);
+        try {
+            return new IndexWriter(directory, writerConfig(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        } catch (IndexNotFoundException | CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
+            LOGGER.warn("Could not read the text index in {}, creating a new one", path, e);
+            // creating reads the last commit too, the unreadable files are deleted first
+            for (String file : directory.listAll()) directory.deleteFile(file);
+            return new IndexWriter(directory, writerConfig(IndexWriterConfig.OpenMode.CREATE));
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+    }
+
+    private IndexWriterConfig writerConfig(IndexWriterConfig.OpenMode openMode) {
+        // sorted by id, the default sort reads only the first matches of the index
+        // only commit() commits, with the resume token of the changes
+        return new IndexWriterConfig(analyzer).setOpenMode(openMode).setIndexSort(new Sort(ID)).setCommitOnClose(false);
+    }
+
+    private static BsonDocument committedResumeToken(IndexWriter writer) {
+        var commitData = writer.getLiveCommitData();
+        if (commitData == null) return null;
+        for (Map.Entry<String, String> entry : commitData) {
+            if (entry.getKey().equals(RESUME_TOKEN)) return BsonDocument.parse(entry.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * @return empty if the index is not in sync with the catalog
+     */
+    public Optional<List<ProductView>> search(ProductQuery query) throws InvalidProductQueryException {
+        if (!live) return Optional.empty();
+        var luceneQuery = toLuceneQuery(query);
+        if (luceneQuery == null) return Optional.of(List.of());
+        try {
+            var searcher = searcherManager.acquire();
+            try {
+                var hits = searcher.searchAfter(after(query.cursor(), searcher), luceneQuery, query.pageSize(), sort(query.sort()));
+                var storedFields = searcher.storedFields();
+                var views = new ArrayList<ProductView>(hits.scoreDocs.length);
+                for (ScoreDoc hit : hits.scoreDocs) views.add(toView(storedFields.document(hit.doc)));
+                return Optional.of(views);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Every word of the text and the filters of the query, the cursor is the search after.
+     *
+     * @return null if the text has no words the index can match
+     */
+    private Query toLuceneQuery(ProductQuery query) throws InvalidProductQueryException {
+        var words = analyze(query.text());
+        if (words.isEmpty()) return null;
+        var builder = new BooleanQuery.Builder();
+        for (String word : words) builder.add(new TermQuery(new Term("text", word)), BooleanClause.Occur.MUST);
+        builder.add(new TermQuery(new Term("category", query.category().name())), BooleanClause.Occur.FILTER);
+        if (query.minPrice() != null || query.maxPrice() != null) {
+            int minPrice = query.minPrice() == null ? Integer.MIN_VALUE : query.minPrice();
+            int maxPrice = query.maxPrice() == null ? Integer.MAX_VALUE : query.maxPrice();
+            builder.add(IntPoint.newRangeQuery("price", minPrice, maxPrice), BooleanClause.Occur.FILTER);
+        }
+        if (query.lastId() != null) {
+            if (!ObjectId.isValid(query.lastId())) throw new InvalidProductQueryException("Invalid lastId");
+            var lastId = new BytesRef(new ObjectId(query.lastId()).toHexString());
+            builder.add(SortedDocValuesField.newSlowRangeQuery("id", lastId, null, false, false), BooleanClause.Occur.FILTER);
+        }
+        switch (query) {
+            case ProductQuery.ForLaptop forLaptop -> {
+                if (forLaptop.ram() != null) builder.add(IntPoint.newExactQuery("ram", forLaptop.ram()), BooleanClause.Occur.FILTER);
+            }
+        }
+        return builder.build();
+    }
+
+    private List<String> analyze(String text) {
+        var words = new LinkedHashSet<String>();
+        try (var tokens = analyzer.tokenStream("text", text)) {
+            var term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) words.add(term.toString());
+            tokens.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return List.copyOf(words);
+    }
+
+    /**
+     * The sort values of the last product of the previous page. Ids are unique, only that product ties
+     * with them and the last document of the reader as the tie breaker leaves it out.
+     */
+    private static FieldDoc after(ProductCursor cursor, IndexSearcher searcher) {
+        if (cursor == null) return null;
+        var id = new BytesRef(new ObjectId(cursor.productId()).toHexString());
+        int lastDocument = searcher.getIndexReader().maxDoc() - 1;
+        return switch (cursor.sort()) {
+            case DEFAULT -> new FieldDoc(lastDocument, Float.NaN, new Object[]{ id });
+            case NEWEST -> new FieldDoc(lastDocument, Float.NaN, new Object[]{ CatalogIndex.high(new ObjectId(cursor.productId())), id });
+            case PRICE_ASC, PRICE_DESC -> new FieldDoc(lastDocument, Float.NaN, new Object[]{ cursor.price(), id });
+        };
+    }
+
+    private static Sort sort(ProductSort sort) {
+        return switch (sort) {
+            case DEFAULT -> new Sort(ID);
+            case NEWEST -> new Sort(new SortField("idHigh", SortField.Type.LONG, true), new SortField("id", SortField.Type.STRING, true));
+            case PRICE_ASC -> new Sort(PRICE, ID);
+            case PRICE_DESC -> new Sort(new SortField("price", SortField.Type.INT, true), new SortField("id", SortField.Type.STRING, true));
+        };
+    }
+
+    @Override
+    public BsonDocument resumeToken() {
+        return resumeToken;
+    }
+
+    @Override
+    public void onStreamResumed() {
+        refreshSafely();
+        live = true;
+        LOGGER.info("Resumed the text index with {} products", writer.getDocStats().numDocs);
+    }
+
+    @Override
+    public void onStreamOpened() {
+        long start = System.nanoTime();
+        try {
+            synchronized (this) {
+                // a commit from now on would hold a partial index, none is made until the stream catches up
+                resumeToken = null;
+                writer.deleteAll();
+            }
+            for (org.bson.Document product : products.find().projection(INDEXED_FIELDS).batchSize(10_000)) {
+                var document = toDocument(product);
+                if (document != null) writer.addDocument(document);
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        live = true;
+        LOGGER.info("Indexed {} products in {} ms", writer.getDocStats().numDocs, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<org.bson.Document> change) {
+        try {
+            apply(change);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resumeToken = change.getResumeToken();
+    }
+
+    private void apply(ChangeStreamDocument<org.bson.Document> change) throws IOException {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // null when the product was deleted before the lookup, its delete follows
+                if (change.getFullDocument() == null) return;
+                var document = toDocument(change.getFullDocument());
+                var id = idTerm(change.getDocumentKey().getObjectId("_id").getValue());
+                if (document != null) writer.updateDocument(id, document);
+                else writer.deleteDocuments(id);
+            }
+            case DELETE -> writer.deleteDocuments(idTerm(change.getDocumentKey().getObjectId("_id").getValue()));
+            case DROP, DROP_DATABASE, RENAME -> writer.deleteAll();
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onCaughtUp(BsonDocument resumeToken) {
+        this.resumeToken = resumeToken;
+    }
+
+    @Override
+    public void onStreamClosed() {
+        live = false;
+    }
+
+    /**
+     * @return null for a document that is not a product of a known category
+     */
+    static Document toDocument(org.bson.Document product) {
+        var row = ProductSearchEngine.toRow(product);
+        if (row == null) return null;
+        var id = row.id().toHexString();
+        var document = new Document();
+        document.add(new StringField("id", id, Field.Store.YES));
+        document.add(new SortedDocValuesField("id", new BytesRef(id)));
+        // the reverse of the index sort cannot stop at the first matches, the newest sort skips on these points instead
+        long idHigh = CatalogIndex.high(row.id());
+        document.add(new LongPoint("idHigh", idHigh));
+        document.add(new NumericDocValuesField("idHigh", idHigh));
+        document.add(new StringField("category", row.category().name(), Field.Store.NO));
+        var text = new StringJoiner("\n");
+        if (row.productName() != null) text.add(row.productName());
+        if (product.get("description") instanceof String description) text.add(description);
+        document.add(new TextField("text", text.toString(), Field.Store.NO));
+        // points and doc values of the same name, the price sorts skip the documents that cannot compete
+        document.add(new IntPoint("price", row.price()));
+        document.add(new NumericDocValuesField("price", row.price()));
+        document.add(new StoredField("price", row.price()));
+        document.add(new IntPoint("ram", row.ram()));
+        document.add(new StoredField("quantity", row.quantity()));
+        if (row.productName() != null) document.add(new StoredField("productName", row.productName()));
+        if (row.image() != null) document.add(new StoredField("image", row.image()));
+        return document;
+    }
+
+    private static ProductView toView(Document document) {
+        return new ProductView(document.get("id"), document.get("productName"), document.get("image"),
+                document.getField("quantity").numericValue().intValue(), document.getField("price").numericValue().intValue());
+    }
+
+    private static Term idTerm(ObjectId productId) {
+        return new Term("id", productId.toHexString());
+    }
+
+    private void refreshSafely() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not reopen the text index", e);
+        }
+    }
+
+    private void commitSafely() {
+        try {
+            commit();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not commit the text index", e);
+        }
+    }
+
+    /**
+     * Commits the changes with their resume token, not while the index is rebuilt.
+     */
+    private synchronized void commit() throws IOException {
+        // read before the commit, which holds at least the changes up to it
+        var token = resumeToken;
+        if (token == null || token.equals(committedToken)) return;
+        writer.setLiveCommitData(Map.of(RESUME_TOKEN, token.toJson()).entrySet());
+        writer.commit();
+        committedToken = token;
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException, InterruptedException {
+        maintainer.shutdown();
+        maintainer.awaitTermination(5, TimeUnit.SECONDS);
+        commitSafely();
+        searcherManager.close();
+        writer.close();
+        if (temporaryPath != null) IOUtils.rm(temporaryPath);
+    }
+}
@@ -0,0 +1,21 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductView;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking counterpart of {@link ProductService}, used with {@code spring.main.web-application-type=reactive}.
+ */
+public interface ReactiveProductService {
+
+    /**
+     * The products of the page, emitted as they are read from the cursor.
+     * Fails with {@link com.sellersphere.productservice.rest.InvalidProductQueryException} for an invalid query.
+     */
+    Flux<ProductView> searchProducts(ProductQuery query);
+
+    Mono<Product> findProductById(String productId);
+}
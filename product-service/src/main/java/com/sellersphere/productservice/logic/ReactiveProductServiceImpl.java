@@ -0,0 +1,51 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.sellersphere.productservice.codec.ProductCodecs;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.rest.InvalidProductQueryException;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.mongodb.client.model.Filters.eq;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public final class ReactiveProductServiceImpl implements ReactiveProductService {
+
+    private final MongoCollection<Document> products;
+
+    public ReactiveProductServiceImpl(MongoClient mongoClient) {
+        products = mongoClient.getDatabase("sellersphere").getCollection("products")
+                .withCodecRegistry(ProductCodecs.REGISTRY);
+    }
+
+    @Override
+    public Flux<ProductView> searchProducts(ProductQuery query) {
+        Bson filter;
+        try {
+            filter = ProductQueryEncoder.encode(query);
+        } catch (InvalidProductQueryException e) {
+            return Flux.error(e);
+        }
+        return Flux.from(products.find(filter, ProductView.class)
+                .sort(ProductQueryEncoder.sort(query.sort()))
+                .limit(query.pageSize())
+                .batchSize(query.pageSize())
+                .projection(ProductServiceImpl.PRODUCT_VIEW_FIELDS));
+    }
+
+    @Override
+    public Mono<Product> findProductById(String productId) {
+        if (!ObjectId.isValid(productId)) return Mono.empty();
+        return Mono.from(products.find(eq("_id", new ObjectId(productId)), Product.class).first());
+    }
+}
@@ -0,0 +1,7 @@
+package com.sellersphere.productservice.rest;
+
+public final class InvalidUploadException extends Exception {
+    public InvalidUploadException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,64 @@
+package com.sellersphere.productservice.rest;
+
+import com.sellersphere.productservice.data.IngestionFormat;
+import com.sellersphere.productservice.data.IngestionReport;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.logic.ProductIngestionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Bulk loading of catalogs, enabled by setting {@code product.ingestion.key}, the key callers
+ * send in the {@value #INGESTION_KEY} header.
+ */
+@RestController
+@RequestMapping("/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "product.ingestion.key")
+public final class ProductIngestionController {
+
+    public static final String INGESTION_KEY = "Ingestion-Key";
+
+    private final ProductIngestionService ingestionService;
+    private final byte[] ingestionKey;
+
+    public ProductIngestionController(ProductIngestionService ingestionService,
+                                      @Value("${product.ingestion.key}") String ingestionKey) {
+        this.ingestionService = ingestionService;
+        this.ingestionKey = ingestionKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The upload is read as it arrives, never buffered whole.
+     */
+    @PostMapping(value = "/ingest/{category}", consumes = {"application/x-ndjson", "text/csv"})
+    public IngestionReport ingestProducts(@PathVariable String category,
+                                          @RequestHeader(name = INGESTION_KEY, required = false) String key,
+                                          @RequestHeader("Content-Type") MediaType contentType,
+                                          InputStream upload) throws IOException {
+        if (key == null || !MessageDigest.isEqual(ingestionKey, key.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+        }
+        ProductCategory productCategory = ProductCategory.fromString(category)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: ".concat(category)));
+        IngestionFormat format = IngestionFormat.fromMediaType(contentType.getType() + "/" + contentType.getSubtype())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+        var charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        try {
+            return ingestionService.ingest(productCategory, format, new InputStreamReader(upload, charset));
+        } catch (InvalidUploadException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -9,4 +9,9 @@ public interface ProductQueryFactory {
 
     ProductQuery create(ProductCategory category, Map<String, String> queryParams) throws InvalidProductQueryException;
 
+    /**
+     * The typed prefix of a product suggestion, {@link com.sellersphere.productservice.data.ProductSuggestion#normalize normalized}.
+     */
+    String createSuggestionPrefix(String prefix) throws InvalidProductQueryException;
+
 }
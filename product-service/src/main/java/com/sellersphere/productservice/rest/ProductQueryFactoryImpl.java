@@ -1,30 +1,89 @@
 package com.sellersphere.productservice.rest;
 
 import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductCursor;
 import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductSuggestion;
 import org.springframework.stereotype.Component;
 
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Component
 public final class ProductQueryFactoryImpl implements ProductQueryFactory {
 
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
     @Override
     public ProductQuery create(ProductCategory category, Map<String, String> queryParams) throws InvalidProductQueryException {
         var lastId = queryParams.get("lastId");
+        var text = getText(queryParams);
         Integer minPrice = getInteger("minPrice", queryParams, true);
         Integer maxPrice = getInteger("maxPrice", queryParams, true);
         if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
             throw new InvalidProductQueryException("minPrice is greater than maxPrice");
         }
+        var sortParam = queryParams.get("sort");
+        var sort = sortParam == null ? ProductSort.DEFAULT : ProductSort.fromString(sortParam)
+                .orElseThrow(() -> new InvalidProductQueryException("Unknown sort: ".concat(sortParam)));
+        var cursor = getCursor(queryParams);
+        if (cursor != null && cursor.sort() != sort) {
+            throw new InvalidProductQueryException("cursor is of another sort");
+        }
+        if (lastId != null && (cursor != null || sort != ProductSort.DEFAULT)) {
+            throw new InvalidProductQueryException("lastId only pages the default sort without a cursor");
+        }
+        Integer pageSize = getInteger("pageSize", queryParams, true);
+        if (pageSize == null) pageSize = ProductQuery.DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > ProductQuery.MAX_PAGE_SIZE) {
+            throw new InvalidProductQueryException("pageSize must be between 1 and " + ProductQuery.MAX_PAGE_SIZE);
+        }
         return switch (category){
             case LAPTOP -> {
                 var ram = getInteger("ram", queryParams, true);
-                yield new ProductQuery.ForLaptop(minPrice, maxPrice, lastId, ram);
+                yield new ProductQuery.ForLaptop(minPrice, maxPrice, text, lastId, ram, sort, cursor, pageSize);
             }
         };
     }
 
+    /**
+     * A prefix ending with a separator keeps a space after its last word, so that word is whole. Only the
+     * first {@value ProductSuggestion#MAX_PREFIX_LENGTH} characters are kept.
+     */
+    @Override
+    public String createSuggestionPrefix(String prefix) throws InvalidProductQueryException {
+        if (prefix.length() > ProductQuery.MAX_TEXT_LENGTH) {
+            throw new InvalidProductQueryException("prefix is longer than " + ProductQuery.MAX_TEXT_LENGTH + " characters");
+        }
+        var normalized = ProductSuggestion.normalize(prefix);
+        if (normalized.isEmpty()) throw new InvalidProductQueryException("prefix has no words");
+        if (!ProductSuggestion.isWordCharacter(prefix.codePointBefore(prefix.length()))) normalized += " ";
+        return normalized.length() > ProductSuggestion.MAX_PREFIX_LENGTH
+                ? normalized.substring(0, ProductSuggestion.MAX_PREFIX_LENGTH) : normalized;
+    }
+
+    /**
+     * The words of the text, anything but letters and digits separates them.
+     */
+    private static String getText(Map<String, String> query) throws InvalidProductQueryException {
+        var text = query.get("text");
+        if (text == null) return null;
+        if (text.length() > ProductQuery.MAX_TEXT_LENGTH) {
+            throw new InvalidProductQueryException("text is longer than " + ProductQuery.MAX_TEXT_LENGTH + " characters");
+        }
+        var words = WORD_SEPARATORS.splitAsStream(text.toLowerCase(Locale.ROOT)).filter(word -> !word.isEmpty()).toList();
+        if (words.isEmpty()) throw new InvalidProductQueryException("text has no words");
+        return String.join(" ", words);
+    }
+
+    private static ProductCursor getCursor(Map<String, String> query) throws InvalidProductQueryException {
+        var token = query.get("cursor");
+        if (token == null) return null;
+        return ProductCursor.decode(token).orElseThrow(() -> new InvalidProductQueryException("Invalid cursor"));
+    }
+
     private static Integer getInteger(String key, Map<String, String> query, boolean unsigned) throws InvalidProductQueryException {
         var value = query.get(key);
         if (value == null) return null;
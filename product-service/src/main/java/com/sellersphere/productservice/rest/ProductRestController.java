@@ -1,47 +1,149 @@
 package com.sellersphere.productservice.rest;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sellersphere.productservice.data.Product;
 import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductFacets;
+import com.sellersphere.productservice.data.ProductLookup;
 import com.sellersphere.productservice.data.ProductView;
 import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSuggestion;
 import com.sellersphere.productservice.logic.ProductService;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import org.hibernate.validator.constraints.Length;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public final class ProductRestController {
 
+    public static final String NEXT_CURSOR = "Next-Cursor";
+
     private final ProductService productService;
     private final ProductQueryFactory queryFactory;
+    private final ObjectMapper objectMapper;
+    private final CacheControl productCacheControl;
+    private final CacheControl searchCacheControl;
 
-    public ProductRestController(ProductService productService, ProductQueryFactory queryFactory) {
+    public ProductRestController(ProductService productService, ProductQueryFactory queryFactory, ObjectMapper objectMapper,
+                                 @Value("${product.http.max-age:PT1M}") Duration productMaxAge,
+                                 @Value("${product.http.search-max-age:PT10S}") Duration searchMaxAge) {
         this.productService = productService;
         this.queryFactory = queryFactory;
+        this.objectMapper = objectMapper;
+        this.productCacheControl = CacheControl.maxAge(productMaxAge).cachePublic().mustRevalidate();
+        this.searchCacheControl = CacheControl.maxAge(searchMaxAge).cachePublic().mustRevalidate();
     }
 
     @GetMapping("/search/{category}")
-    public List<ProductView> searchProducts(@PathVariable String category,
-                                            @RequestParam Map<String, String> queryParams){
+    public ResponseEntity<List<ProductView>> searchProducts(@PathVariable String category,
+                                                            @RequestParam Map<String, String> queryParams){
         ProductCategory productCategory = ProductCategory.fromString(category)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: ".concat(category)));
         try {
             ProductQuery productQuery = queryFactory.create(productCategory, queryParams);
-            return productService.searchProducts(productQuery);
+            var page = productService.searchProducts(productQuery);
+            // a 304 is sent instead when the ETag matches If-None-Match
+            var response = ResponseEntity.ok()
+                    .eTag(digest(page))
+                    .cacheControl(searchCacheControl);
+            if (page.next() != null) response.header(NEXT_CURSOR, page.next());
+            return response.body(page.items());
+        } catch (InvalidProductQueryException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null, e);
+        }
+    }
+
+    /**
+     * The SHA-256 of the JSON of a response, a strong ETag that every instance computes the same for the same body.
+     */
+    private String digest(Object body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The counts of the products matching the filters of a search, for every page of it.
+     */
+    @GetMapping("/facets/{category}")
+    public ResponseEntity<ProductFacets> findFacets(@PathVariable String category,
+                                                   @RequestParam Map<String, String> queryParams){
+        ProductCategory productCategory = ProductCategory.fromString(category)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: ".concat(category)));
+        try {
+            var facets = productService.findFacets(queryFactory.create(productCategory, queryParams));
+            return ResponseEntity.ok()
+                    .eTag(digest(facets))
+                    .cacheControl(searchCacheControl)
+                    .body(facets);
         } catch (InvalidProductQueryException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null, e);
         }
     }
 
+    /**
+     * The most popular products with a word of their name starting with the prefix, asked for as it is typed.
+     */
+    @GetMapping("/suggestions/{category}")
+    public ResponseEntity<List<ProductSuggestion>> suggestProducts(@PathVariable String category, @RequestParam String prefix,
+                                                                   @RequestParam(required = false) Integer limit){
+        ProductCategory productCategory = ProductCategory.fromString(category)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: ".concat(category)));
+        if (limit == null) limit = ProductSuggestion.MAX_SUGGESTIONS;
+        if (limit < 1 || limit > ProductSuggestion.MAX_SUGGESTIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + ProductSuggestion.MAX_SUGGESTIONS);
+        }
+        try {
+            var suggestions = productService.suggestProducts(productCategory, queryFactory.createSuggestionPrefix(prefix), limit);
+            return ResponseEntity.ok().cacheControl(searchCacheControl).body(suggestions);
+        } catch (InvalidProductQueryException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null, e);
+        }
+    }
+
+    /**
+     * Looks up to 100 products with a single query, the results are in the order of the ids.
+     */
+    @PostMapping("/batch")
+    public List<ProductLookup> findProductViews(@RequestBody @Size(min = 1, max = 100) List<@NotNull String> productIds){
+        return productService.findProductViews(productIds);
+    }
+
+    /**
+     * The ETag of a product is its version, so a revalidation with If-None-Match reads only the version.
+     */
     @GetMapping("/{productId}")
-    public ResponseEntity<Product> findProductById(@PathVariable @Length(min = 24, max = 24) String productId){
-        return productService.findProductById(productId).map(ResponseEntity::ok)
+    public ResponseEntity<Product> findProductById(@PathVariable @Length(min = 24, max = 24) String productId,
+                                                   WebRequest webRequest){
+        var version = productService.findProductVersion(productId);
+        if (version.isEmpty()) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        var eTag = Long.toString(version.getAsLong());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(productCacheControl).build();
+        }
+        // read after the version, the product is then at least as new as its ETag
+        return productService.findProductById(productId)
+                .map(product -> ResponseEntity.ok().eTag(eTag).cacheControl(productCacheControl).body(product))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
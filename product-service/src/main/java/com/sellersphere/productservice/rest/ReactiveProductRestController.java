@@ -0,0 +1,83 @@
+package com.sellersphere.productservice.rest;
+
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.logic.ReactiveProductService;
+import org.hibernate.validator.constraints.Length;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The endpoints of {@link ProductRestController} on WebFlux, no thread waits for MongoDB.
+ */
+@RestController
+@RequestMapping("/products")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public final class ReactiveProductRestController {
+
+    private final ReactiveProductService productService;
+    private final ProductQueryFactory queryFactory;
+
+    public ReactiveProductRestController(ReactiveProductService productService, ProductQueryFactory queryFactory) {
+        this.productService = productService;
+        this.queryFactory = queryFactory;
+    }
+
+    @GetMapping("/search/{category}")
+    public Mono<ResponseEntity<List<ProductView>>> searchProducts(@PathVariable String category,
+                                                                  @RequestParam Map<String, String> queryParams){
+        var productQuery = createQuery(category, queryParams);
+        return productService.searchProducts(productQuery).collectList().map(views -> {
+            var response = ResponseEntity.ok();
+            if (views.size() == productQuery.pageSize()) {
+                var last = views.getLast();
+                response.header(ProductRestController.NEXT_CURSOR,
+                        new ProductCursor(productQuery.sort(), last.price(), last.productId()).encode());
+            }
+            return response.body(views);
+        });
+    }
+
+    /**
+     * Writes every product as soon as it is read from the cursor, one JSON document per line.
+     * The next page starts after the last product, so there is no Next-Cursor header.
+     */
+    @GetMapping(path = "/search/{category}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductView> streamProducts(@PathVariable String category,
+                                            @RequestParam Map<String, String> queryParams){
+        return productService.searchProducts(createQuery(category, queryParams));
+    }
+
+    /**
+     * The body is declared as an Object so WebFlux picks its writer by the record of the product,
+     * Jackson cannot serialize the {@link Product} interface itself. The id is validated by the
+     * built-in method validation of WebFlux, a shorter or longer one is a bad request.
+     */
+    @GetMapping("/{productId}")
+    public Mono<ResponseEntity<Object>> findProductById(@PathVariable @Length(min = 24, max = 24) String productId){
+        return productService.findProductById(productId).<ResponseEntity<Object>>map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    private ProductQuery createQuery(String category, Map<String, String> queryParams) {
+        ProductCategory productCategory = ProductCategory.fromString(category)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown category: ".concat(category)));
+        try {
+            return queryFactory.create(productCategory, queryParams);
+        } catch (InvalidProductQueryException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, null, e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.sellersphere.productservice;
 import com.mongodb.client.MongoClient;
 import com.sellersphere.productservice.data.Laptop;
 import com.sellersphere.productservice.data.ProductView;
+import io.restassured.http.ContentType;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.instancio.Instancio;
@@ -18,6 +19,15 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
 import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -77,6 +87,176 @@ class ProductServiceApplicationIntegrationTests {
 				.isEqualTo(laptop);
 	}
 	
+	@Test
+	@DisplayName("Page through the products sorted by price")
+	void pageThroughTheProductsSortedByPrice() {
+		int ram = 1234; // only the laptops of this test
+		var expectedPrices = Instancio.of(Laptop.class)
+				.ignore(field(Laptop::productId))
+				.set(field(Laptop::ram), ram)
+				.generate(field(Laptop::price), gen -> gen.ints().range(100, 120))
+				.stream()
+				.limit(20)
+				.peek(this::saveIntoMongoDB)
+				.map(Laptop::price)
+				.sorted(Comparator.reverseOrder())
+				.toList();
+
+		var prices = new ArrayList<Integer>();
+		String cursor = null;
+		do {
+			var request = given().port(productService).queryParams("ram", ram, "sort", "price_desc", "pageSize", 7);
+			if (cursor != null) request.queryParam("cursor", cursor);
+			var response = request.when().get("/products/search/laptop")
+					.then().statusCode(200)
+					.extract();
+			prices.addAll(response.jsonPath().getList("price", Integer.class));
+			cursor = response.header("Next-Cursor");
+		} while (cursor != null);
+
+		assertThat(prices).containsExactlyElementsOf(expectedPrices);
+	}
+
+	@Test
+	@DisplayName("Look up many products at once, in the order of the ids")
+	void lookUpManyProductsAtOnce() {
+		var first = createLaptop();
+		var second = createLaptop();
+		var productIds = List.of(second.productId(), new ObjectId().toHexString(), first.productId());
+
+		var response = given().port(productService)
+				.contentType(ContentType.JSON).body(productIds)
+				.when().post("/products/batch")
+				.then().statusCode(200)
+				.extract().jsonPath();
+
+		assertThat(response.getList("productId", String.class)).containsExactlyElementsOf(productIds);
+		assertThat(response.getList("found", Boolean.class)).containsExactly(true, false, true);
+		assertThat(response.getObject("[0].product", ProductView.class))
+				.isEqualTo(new ProductView(second.productId(), second.productName(), second.images().getFirst(), second.quantity(), second.price()));
+	}
+
+	@Test
+	@DisplayName("Look up products by ids in any letter case, with or without images")
+	void lookUpProductsByIdsInAnyLetterCase() {
+		var laptop = createLaptop();
+		var withoutImages = new Laptop(new ObjectId().toHexString(), "laptop", 3, 900, 16, List.of(), "description");
+		saveIntoMongoDB(withoutImages);
+		// cached by the near cache, when it is enabled
+		given().port(productService).when().get("/products/{productId}", withoutImages.productId()).then().statusCode(200);
+		var productIds = List.of(laptop.productId().toUpperCase(Locale.ROOT), withoutImages.productId(), laptop.productId());
+
+		var response = given().port(productService)
+				.contentType(ContentType.JSON).body(productIds)
+				.when().post("/products/batch")
+				.then().statusCode(200)
+				.extract().jsonPath();
+
+		assertThat(response.getList("found", Boolean.class)).containsExactly(true, true, true);
+		assertThat(response.getObject("[0].product", ProductView.class)).isEqualTo(response.getObject("[2].product", ProductView.class));
+		assertThat(response.getObject("[1].product", ProductView.class))
+				.isEqualTo(new ProductView(withoutImages.productId(), "laptop", null, 3, 900));
+	}
+
+	@Test
+	@DisplayName("An unchanged product is not sent again")
+	void anUnchangedProductIsNotSentAgain() {
+		var laptop = createLaptop();
+
+		var eTag = given().port(productService)
+				.when().get("/products/{productId}", laptop.productId())
+				.then().statusCode(200)
+				.extract().header("ETag");
+
+		given().port(productService).header("If-None-Match", eTag)
+				.when().get("/products/{productId}", laptop.productId())
+				.then().statusCode(304);
+
+		mongoClient.getDatabase("sellersphere").getCollection("products")
+				.updateOne(eq("_id", new ObjectId(laptop.productId())), combine(inc("quantity", 1), inc("version", 1)));
+
+		assertThat(given().port(productService).header("If-None-Match", eTag)
+				.when().get("/products/{productId}", laptop.productId())
+				.then().statusCode(200)
+				.extract().header("ETag"))
+				.isNotEqualTo(eTag);
+	}
+
+	@Test
+	@DisplayName("An unchanged search page is not sent again")
+	void anUnchangedSearchPageIsNotSentAgain() {
+		int ram = 4322; // only the laptop of this test
+		saveIntoMongoDB(Instancio.of(Laptop.class)
+				.ignore(field(Laptop::productId))
+				.set(field(Laptop::ram), ram)
+				.create());
+
+		var eTag = given().port(productService).queryParam("ram", ram)
+				.when().get("/products/search/laptop")
+				.then().statusCode(200)
+				.extract().header("ETag");
+
+		assertThat(eTag).matches("\"[0-9a-f]{64}\"");
+		given().port(productService).queryParam("ram", ram).header("If-None-Match", eTag)
+				.when().get("/products/search/laptop")
+				.then().statusCode(304);
+	}
+
+	@Test
+	@DisplayName("Count the products of a search per price bucket")
+	void countTheProductsOfASearchPerPriceBucket() {
+		int ram = 4321; // only the laptops of this test
+		for (int price : new int[]{ 100, 300, 400, 1200 }) {
+			saveIntoMongoDB(Instancio.of(Laptop.class)
+					.ignore(field(Laptop::productId))
+					.set(field(Laptop::ram), ram)
+					.set(field(Laptop::price), price)
+					.create());
+		}
+
+		var facets = given().port(productService).queryParams("ram", ram, "maxPrice", 1000)
+				.when().get("/products/facets/laptop")
+				.then().statusCode(200)
+				.extract().jsonPath();
+
+		assertThat(facets.getLong("total")).isEqualTo(3);
+		assertThat(facets.getList("prices.count", Long.class)).containsExactly(1L, 2L, 0L, 0L, 0L, 0L);
+		assertThat(facets.getList("ram.value", Integer.class)).containsExactly(ram);
+	}
+
+	@Test
+	@DisplayName("Suggest the most sold products with a word starting with the prefix")
+	void suggestTheMostSoldProductsStartingWithThePrefix() {
+		var word = "Zq" + new ObjectId().toHexString(); // only the laptops of this test
+		var productIds = new ArrayList<String>();
+		for (int sold : new int[]{ 5, 50, 0 }) {
+			var laptop = Instancio.of(Laptop.class)
+					.set(field(Laptop::productId), new ObjectId().toHexString())
+					.set(field(Laptop::productName), "Laptop " + word + " " + sold)
+					.create();
+			saveIntoMongoDB(laptop);
+			mongoClient.getDatabase("sellersphere").getCollection("products")
+					.updateOne(eq("_id", new ObjectId(laptop.productId())), set("sold", sold));
+			productIds.add(laptop.productId());
+		}
+
+		var suggestions = given().port(productService).queryParams("prefix", "laptop-" + word.substring(0, 10))
+				.when().get("/products/suggestions/laptop")
+				.then().statusCode(200)
+				.extract().jsonPath().getList("productId", String.class);
+
+		assertThat(suggestions).containsExactly(productIds.get(1), productIds.get(0), productIds.get(2));
+	}
+
+	private Laptop createLaptop(){
+		var laptop = Instancio.of(Laptop.class)
+				.set(field(Laptop::productId), new ObjectId().toHexString())
+				.generate(field(Laptop::images), gen -> gen.collection().minSize(1))
+				.create();
+		saveIntoMongoDB(laptop);
+		return laptop;
+	}
+
 	private void saveIntoMongoDB(Laptop laptop){
 		var document = new Document()
 				.append("category", LAPTOP.name())
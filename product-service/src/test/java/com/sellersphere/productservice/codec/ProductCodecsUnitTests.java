@@ -0,0 +1,111 @@
+package com.sellersphere.productservice.codec;
+
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductOverview;
+import com.sellersphere.productservice.data.ProductView;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCodecsUnitTests {
+
+    final ObjectId productId = new ObjectId();
+    final Document laptop = new Document("_id", productId)
+            .append("quantity", 4)
+            .append("seller", new Document("sellerId", "seller").append("sellerName", "Seller"))
+            .append("price", 950L)
+            .append("category", "LAPTOP")
+            .append("productName", "laptop")
+            .append("images", List.of("first", "second", "third"))
+            .append("description", "description")
+            .append("ram", 16)
+            .append("version", 3);
+
+    @Test
+    @DisplayName("A product is decoded into the record of its category, whatever the order of its fields")
+    void aProductIsDecodedIntoTheRecordOfItsCategory() {
+        assertThat(decode(laptop, Product.class)).isEqualTo(new Laptop(productId.toHexString(), "laptop", 4, 950, 16,
+                List.of("first", "second", "third"), "description"));
+    }
+
+    @Test
+    @DisplayName("A product is decoded the same when its fields come in another order")
+    void aProductIsDecodedTheSameWhenItsFieldsComeInAnotherOrder() {
+        var reordered = new Document("ram", 16)
+                .append("images", List.of("first", "second", "third"))
+                .append("description", "description")
+                .append("version", 3)
+                .append("productName", "laptop")
+                .append("category", "LAPTOP")
+                .append("price", 950)
+                .append("quantity", 4L)
+                .append("_id", productId);
+
+        assertThat(decode(reordered, Product.class)).isEqualTo(decode(laptop, Product.class));
+    }
+
+    @Test
+    @DisplayName("The optional fields of a product are decoded as absent when missing or null")
+    void theOptionalFieldsOfAProductAreDecodedAsAbsent() {
+        var missing = new Document("_id", productId).append("category", "LAPTOP").append("productName", "laptop")
+                .append("quantity", 4).append("price", 950).append("ram", 16);
+        var nulls = new Document(missing).append("images", null).append("description", null);
+
+        var expected = new Laptop(productId.toHexString(), "laptop", 4, 950, 16, List.of(), null);
+        assertThat(decode(missing, Product.class)).isEqualTo(expected);
+        assertThat(decode(nulls, Product.class)).isEqualTo(expected);
+        assertThat(decode(missing, ProductView.class)).isEqualTo(new ProductView(productId.toHexString(), "laptop", null, 4, 950));
+    }
+
+    @Test
+    @DisplayName("A product view keeps only the first image")
+    void aProductViewKeepsOnlyTheFirstImage() {
+        assertThat(decode(laptop, ProductView.class)).isEqualTo(new ProductView(productId.toHexString(), "laptop", "first", 4, 950));
+    }
+
+    @Test
+    @DisplayName("A product overview keeps the stock of the product")
+    void aProductOverviewKeepsTheStock() {
+        assertThat(decode(laptop, ProductOverview.class)).isEqualTo(new ProductOverview(productId.toHexString(), 4, 950));
+    }
+
+    @Test
+    @DisplayName("An encoded laptop is decoded back")
+    void anEncodedLaptopIsDecodedBack() {
+        var product = new Laptop(productId.toHexString(), "laptop", 4, 950, 16, List.of("first"), "description");
+        var encoded = new BsonDocument();
+        ProductCodecs.REGISTRY.get(Product.class).encode(new BsonDocumentWriter(encoded), product, EncoderContext.builder().build());
+
+        assertThat(ProductCodecs.REGISTRY.get(Product.class).decode(new BsonDocumentReader(encoded), DecoderContext.builder().build()))
+                .isEqualTo(product);
+    }
+
+    @Test
+    @DisplayName("An encoded laptop without a name or description is decoded back")
+    void anEncodedLaptopWithoutANameOrDescriptionIsDecodedBack() {
+        var product = new Laptop(productId.toHexString(), null, 4, 950, 16, List.of(), null);
+        var encoded = new BsonDocument();
+        ProductCodecs.REGISTRY.get(Product.class).encode(new BsonDocumentWriter(encoded), product, EncoderContext.builder().build());
+
+        assertThat(encoded.isNull("productName")).isTrue();
+        assertThat(encoded.isNull("description")).isTrue();
+        assertThat(ProductCodecs.REGISTRY.get(Product.class).decode(new BsonDocumentReader(encoded), DecoderContext.builder().build()))
+                .isEqualTo(product);
+    }
+
+    private <T> T decode(Document document, Class<T> type) {
+        var bson = document.toBsonDocument(Document.class, ProductCodecs.REGISTRY);
+        return ProductCodecs.REGISTRY.get(type).decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+}
@@ -0,0 +1,110 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogIndexUnitTests {
+
+    final Random random = new Random(42);
+
+    @Test
+    @DisplayName("Every sort and filter pages through the same products as a scan of the catalog")
+    void searchesMatchAScanOfTheCatalog() throws Exception {
+        // many rows walk the sorted indexes, a rare ram size takes the few candidates path
+        var rows = new HashMap<ObjectId, CatalogIndex.Row>();
+        var index = new CatalogIndex(0);
+        for (int i = 0; i < CatalogIndex.FEW_CANDIDATES * 2; i++) {
+            var row = randomRow(new ObjectId(new Date(random.nextLong(1_700_000_000_000L)), random.nextInt(1 << 24)));
+            rows.put(row.id(), row);
+            index.append(row);
+        }
+        index.seal();
+        // then changes: new products, repriced products and deleted products
+        var ids = new ArrayList<>(rows.keySet());
+        for (int i = 0; i < 500; i++) {
+            var added = randomRow(new ObjectId());
+            rows.put(added.id(), added);
+            index.upsert(added);
+            var changed = randomRow(ids.get(random.nextInt(ids.size())));
+            rows.put(changed.id(), changed);
+            index.upsert(changed);
+            var removed = ids.remove(random.nextInt(ids.size()));
+            rows.remove(removed);
+            index.remove(removed);
+        }
+        assertThat(index.size()).isEqualTo(rows.size());
+
+        for (ProductSort sort : ProductSort.values()) {
+            for (Integer ram : new Integer[]{ null, 16, 3 }) {
+                for (Integer[] prices : new Integer[][]{ { null, null }, { 200, 700 }, { null, 300 } }) {
+                    var expected = scan(rows.values(), sort, ram, prices[0], prices[1]);
+                    assertThat(pageThrough(index, sort, ram, prices[0], prices[1]))
+                            .as("sort %s, ram %s, prices %s", sort, ram, Arrays.toString(prices))
+                            .containsExactlyElementsOf(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("The lastId of the default sort pages like a cursor")
+    void lastIdPagesLikeACursor() throws Exception {
+        var index = new CatalogIndex(0);
+        var first = randomRow(new ObjectId());
+        var second = randomRow(new ObjectId());
+        index.append(first);
+        index.append(second);
+        index.seal();
+
+        var page = index.search(new ProductQuery.ForLaptop(null, null, null, first.id().toHexString(), null,
+                ProductSort.DEFAULT, null, ProductQuery.DEFAULT_PAGE_SIZE));
+
+        assertThat(page).extracting(ProductView::productId).containsExactly(second.id().toHexString());
+    }
+
+    private List<String> pageThrough(CatalogIndex index, ProductSort sort, Integer ram, Integer minPrice, Integer maxPrice) throws Exception {
+        var productIds = new ArrayList<String>();
+        ProductCursor cursor = null;
+        while (true) {
+            var page = index.search(new ProductQuery.ForLaptop(minPrice, maxPrice, null, null, ram, sort, cursor, 50));
+            page.forEach(view -> productIds.add(view.productId()));
+            if (page.size() < 50) return productIds;
+            var last = page.getLast();
+            cursor = new ProductCursor(sort, last.price(), last.productId());
+        }
+    }
+
+    private static List<String> scan(Collection<CatalogIndex.Row> rows, ProductSort sort, Integer ram, Integer minPrice, Integer maxPrice) {
+        Comparator<CatalogIndex.Row> byId = Comparator.comparing(CatalogIndex.Row::id);
+        Comparator<CatalogIndex.Row> byPrice = Comparator.comparingInt(CatalogIndex.Row::price).thenComparing(byId);
+        var order = switch (sort) {
+            case DEFAULT -> byId;
+            case NEWEST -> byId.reversed();
+            case PRICE_ASC -> byPrice;
+            case PRICE_DESC -> byPrice.reversed();
+        };
+        return rows.stream()
+                .filter(row -> ram == null || row.ram() == ram)
+                .filter(row -> minPrice == null || row.price() >= minPrice)
+                .filter(row -> maxPrice == null || row.price() <= maxPrice)
+                .sorted(order)
+                .map(row -> row.id().toHexString())
+                .toList();
+    }
+
+    private CatalogIndex.Row randomRow(ObjectId id) {
+        // ram 3 is rare, for the few candidates path
+        int ram = random.nextInt(100) == 0 ? 3 : 8 << random.nextInt(3);
+        return new CatalogIndex.Row(id, LAPTOP, random.nextInt(1000), ram, random.nextInt(20), "Laptop", null);
+    }
+}
@@ -0,0 +1,102 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotUnitTests {
+
+    final Random random = new Random(7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("An index read from its snapshot searches like the index and keeps its resume token")
+    void aSnapshotReadsBackAsTheIndex() throws Exception {
+        var index = new CatalogIndex(0);
+        var ids = new ArrayList<ObjectId>();
+        for (int i = 0; i < 1000; i++) {
+            var id = new ObjectId(new Date(random.nextLong(1_700_000_000_000L)), random.nextInt(1 << 24));
+            ids.add(id);
+            index.append(randomRow(id));
+        }
+        index.seal();
+        index.remove(ids.getFirst());
+        index.upsert(randomRow(new ObjectId()));
+        index.advance(token("first"));
+        var file = directory.resolve("catalog.snapshot");
+
+        CatalogSnapshot.write(index.columns(), file);
+        var read = new CatalogIndex(CatalogSnapshot.read(file));
+
+        assertSameSearches(read, index);
+        assertThat(read.resumeToken()).isEqualTo(token("first"));
+
+        // changed rows hold their strings on the heap, the others still read them from the first snapshot
+        for (int i = 1; i < 100; i++) {
+            var row = randomRow(ids.get(i));
+            read.upsert(row);
+            index.upsert(row);
+        }
+        read.advance(token("second"));
+        CatalogSnapshot.write(read.columns(), file);
+        var readAgain = new CatalogIndex(CatalogSnapshot.read(file));
+
+        assertSameSearches(readAgain, index);
+        assertThat(readAgain.resumeToken()).isEqualTo(token("second"));
+    }
+
+    @Test
+    @DisplayName("A truncated snapshot is not read")
+    void aTruncatedSnapshotIsNotRead() throws Exception {
+        var index = new CatalogIndex(0);
+        index.append(randomRow(new ObjectId()));
+        index.seal();
+        index.advance(token("first"));
+        var file = directory.resolve("catalog.snapshot");
+        CatalogSnapshot.write(index.columns(), file);
+
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 20));
+
+        assertThatThrownBy(() -> CatalogSnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+
+    private static void assertSameSearches(CatalogIndex actual, CatalogIndex expected) throws Exception {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (ProductSort sort : ProductSort.values()) {
+            for (Integer ram : new Integer[]{ null, 16 }) {
+                var query = new ProductQuery.ForLaptop(100, 800, null, null, ram, sort, null, 50);
+                assertThat(actual.search(query)).isEqualTo(expected.search(query));
+            }
+        }
+    }
+
+    private CatalogIndex.Row randomRow(ObjectId id) {
+        var image = random.nextBoolean() ? null : "https://images.sellersphere.com/" + id.toHexString() + "/ü.png";
+        return new CatalogIndex.Row(id, LAPTOP, random.nextInt(1000), 8 << random.nextInt(3),
+                random.nextInt(20), "Laptop " + random.nextInt(50), image);
+    }
+
+    private static BsonDocument token(String data) {
+        return new BsonDocument("_data", new BsonString(data));
+    }
+}
@@ -0,0 +1,105 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductFacets;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFacetCacheUnitTests {
+
+    final ObjectId productId = new ObjectId();
+    final AtomicInteger aggregations = new AtomicInteger();
+    final ProductFacetCache facetCache = new ProductFacetCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void openStream() {
+        facetCache.onStreamOpened();
+    }
+
+    @Test
+    @DisplayName("Every page and sort of a search shares the facets of its filters")
+    void everyPageSharesTheFacets() {
+        var firstPage = new ProductQuery.ForLaptop(500, null, null, null, 16, ProductSort.DEFAULT, null, 15);
+        var nextPage = new ProductQuery.ForLaptop(500, null, null, null, 16, ProductSort.PRICE_DESC,
+                new ProductCursor(ProductSort.PRICE_DESC, 900, productId.toHexString()), 50);
+
+        facetCache.get(ProductQueryEncoder.filtersOf(firstPage), this::aggregate);
+        facetCache.get(ProductQueryEncoder.filtersOf(nextPage), this::aggregate);
+
+        assertThat(aggregations).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Quantity changes keep the facets, price changes evict the facets of the category")
+    void onlyChangesThatMoveCountsEvictTheFacets() {
+        var filters = ProductQueryEncoder.filtersOf(new ProductQuery.ForLaptop(null, 1000, null, null, null, ProductSort.DEFAULT, null, 15));
+        facetCache.get(filters, this::aggregate);
+
+        facetCache.onChange(update(new BsonDocument("quantity", new BsonInt32(3))));
+        facetCache.get(filters, this::aggregate);
+        assertThat(aggregations).hasValue(1);
+
+        facetCache.onChange(update(new BsonDocument("price", new BsonInt32(1200))));
+        facetCache.get(filters, this::aggregate);
+        assertThat(aggregations).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("A change of a product in an unknown category evicts all the facets")
+    void aChangeInAnUnknownCategoryEvictsAllTheFacets() {
+        var filters = ProductQueryEncoder.filtersOf(new ProductQuery.ForLaptop(null, 1000, null, null, null, ProductSort.DEFAULT, null, 15));
+        facetCache.get(filters, this::aggregate);
+
+        facetCache.onChange(update(new BsonDocument("price", new BsonInt32(1200)), "PHONE"));
+        facetCache.get(filters, this::aggregate);
+
+        assertThat(aggregations).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Facets aggregated while their category changed are not kept")
+    void facetsAggregatedWhileTheirCategoryChangedAreNotKept() {
+        var filters = ProductQueryEncoder.filtersOf(new ProductQuery.ForLaptop(null, 1000, null, null, null, ProductSort.DEFAULT, null, 15));
+
+        facetCache.get(filters, () -> {
+            facetCache.onChange(update(new BsonDocument("price", new BsonInt32(1200))));
+            return aggregate();
+        });
+        facetCache.get(filters, this::aggregate);
+
+        assertThat(aggregations).hasValue(2);
+    }
+
+    private ProductFacets aggregate() {
+        aggregations.incrementAndGet();
+        return new ProductFacets(1, List.of(new ProductFacets.PriceBucket(0, null, 1)), List.of(new ProductFacets.ValueCount(16, 1)));
+    }
+
+    private ChangeStreamDocument<Document> update(BsonDocument updatedFields) {
+        return update(updatedFields, "LAPTOP");
+    }
+
+    private ChangeStreamDocument<Document> update(BsonDocument updatedFields, String category) {
+        var fullDocument = new Document("_id", productId).append("category", category).append("quantity", 3);
+        return new ChangeStreamDocument<>("update", null, null, null, fullDocument, null,
+                new BsonDocument("_id", new BsonObjectId(productId)), null,
+                new UpdateDescription(List.of(), updatedFields), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertOneModel;
+import com.sellersphere.productservice.data.IngestionFormat;
+import com.sellersphere.productservice.data.IngestionReport;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductIngestionServiceUnitTests {
+
+    static final String UPLOAD = """
+            {"productName": "Laptop", "quantity": 3, "price": 900, "ram": 16}
+            {"productName": "Laptop", "quantity": 3, "price": 900, "ram": 16}
+            {"productName": "Laptop", "quantity": 3, "price": 900, "ram": 16}
+            """;
+
+    final List<BsonDocument> inserted = new CopyOnWriteArrayList<>();
+
+    @Test
+    @DisplayName("Products are inserted with version 0")
+    void productsAreInsertedWithVersion0() throws Exception {
+        var report = ingest(models -> {
+            models.forEach(model -> inserted.add(model.getDocument()));
+            return BulkWriteResult.acknowledged(models.size(), 0, 0, 0, List.of(), List.of());
+        });
+
+        assertThat(report).isEqualTo(new IngestionReport(3, 3, 0, List.of()));
+        assertThat(inserted).extracting(document -> document.get("version")).containsOnly(new BsonInt32(0));
+    }
+
+    @Test
+    @DisplayName("A chunk whose write fails unexpectedly is reported failed as a whole, the others are still written")
+    void aChunkWhoseWriteFailsUnexpectedlyIsReportedFailed() throws Exception {
+        var report = ingest(models -> {
+            if (inserted.isEmpty()) {
+                inserted.add(models.getFirst().getDocument());
+                throw new IllegalStateException("state should be: open");
+            }
+            return BulkWriteResult.acknowledged(models.size(), 0, 0, 0, List.of(), List.of());
+        });
+
+        assertThat(report.records()).isEqualTo(3);
+        assertThat(report.inserted()).isEqualTo(1);
+        assertThat(report.failed()).isEqualTo(2);
+        assertThat(report.errors()).extracting(IngestionReport.LineError::message)
+                .containsOnly("Write failed: state should be: open");
+    }
+
+    private IngestionReport ingest(Function<List<InsertOneModel<BsonDocument>>, BulkWriteResult> bulkWrite) throws Exception {
+        // chunks of 2 written one at a time, the first chunk is the first write
+        var service = new ProductIngestionService(products(bulkWrite), 2, 1);
+        return service.ingest(LAPTOP, IngestionFormat.NDJSON, new StringReader(UPLOAD));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<BsonDocument> products(Function<List<InsertOneModel<BsonDocument>>, BulkWriteResult> bulkWrite) {
+        return (MongoCollection<BsonDocument>) Proxy.newProxyInstance(MongoCollection.class.getClassLoader(),
+                new Class<?>[]{ MongoCollection.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("bulkWrite")) throw new UnsupportedOperationException(method.getName());
+                    return bulkWrite.apply((List<InsertOneModel<BsonDocument>>) args[0]);
+                });
+    }
+}
@@ -0,0 +1,111 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sellersphere.productservice.data.Laptop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductNearCacheUnitTests {
+
+    final ObjectId productId = new ObjectId();
+    final AtomicInteger loads = new AtomicInteger();
+    final ProductNearCache nearCache = new ProductNearCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void openStream() {
+        nearCache.onStreamOpened();
+    }
+
+    @Test
+    @DisplayName("A cached product is loaded once")
+    void aCachedProductIsLoadedOnce() {
+        var first = nearCache.get(productId, this::load);
+        var second = nearCache.get(productId, this::load);
+
+        assertThat(second).isEqualTo(first).get().isInstanceOf(Laptop.class);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Stock updates patch the cached product")
+    void stockUpdatesPatchTheCachedProduct() {
+        nearCache.get(productId, this::load);
+
+        nearCache.onChange(update(new BsonDocument("quantity", new BsonInt32(3)), laptopDocument(3, 700, 1)));
+
+        assertThat(nearCache.get(productId, this::load)).get()
+                .extracting("quantity", "price").containsExactly(3, 700);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Older stock does not replace newer stock")
+    void olderStockIsIgnored() {
+        nearCache.onChange(update(new BsonDocument("quantity", new BsonInt32(3)), laptopDocument(3, 700, 1)));
+        nearCache.get(productId, id -> laptopDocument(8, 700, 2));
+
+        nearCache.onChange(update(new BsonDocument("quantity", new BsonInt32(3)), laptopDocument(3, 700, 1)));
+
+        assertThat(nearCache.get(productId, this::load)).get().extracting("quantity").isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("Other updates evict the cached product")
+    void otherUpdatesEvictTheCachedProduct() {
+        nearCache.get(productId, this::load);
+
+        nearCache.onChange(update(new BsonDocument("productName", new BsonString("renamed")), laptopDocument(10, 700, 1)));
+        nearCache.get(productId, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("The cache is bypassed while the change stream is closed")
+    void theCacheIsBypassedWhileTheStreamIsClosed() {
+        nearCache.onStreamClosed();
+
+        nearCache.get(productId, this::load);
+        nearCache.get(productId, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private Document load(ObjectId id) {
+        loads.incrementAndGet();
+        return laptopDocument(10, 700, 0);
+    }
+
+    private Document laptopDocument(int quantity, int price, int version) {
+        return new Document("_id", productId)
+                .append("category", "LAPTOP")
+                .append("productName", "laptop")
+                .append("quantity", quantity)
+                .append("price", price)
+                .append("ram", 16)
+                .append("images", List.of("image"))
+                .append("description", "description")
+                .append("version", version);
+    }
+
+    private ChangeStreamDocument<Document> update(BsonDocument updatedFields, Document fullDocument) {
+        return new ChangeStreamDocument<>("update", null, null, null, fullDocument, null,
+                new BsonDocument("_id", new BsonObjectId(productId)), null,
+                new UpdateDescription(List.of(), updatedFields), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,72 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.IngestionFormat;
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.logic.ProductRecordReader.ProductRecord;
+import com.sellersphere.productservice.rest.InvalidUploadException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductRecordReaderUnitTests {
+
+    @Test
+    @DisplayName("NDJSON lines are read into products, invalid lines are reported with their line number")
+    void ndjsonLinesAreReadIntoProducts() throws Exception {
+        var records = readAll(IngestionFormat.NDJSON, """
+                {"productName": "Laptop", "quantity": 3, "price": 900, "ram": 16, "images": ["a.png"]}
+
+                {"productName": "Laptop", "quantity": 3, "price": 900
+                {"productName": "Laptop", "quantity": -1, "price": 900, "ram": 16}
+                {"productName": "Laptop", "quantity": 3, "price": 900, "ram": 16, "color": "red"}
+                {"productName": "Laptop", "quantity": 3, "price": 9.5, "ram": 16}
+                """);
+
+        assertThat(records).hasSize(5);
+        assertThat(records.getFirst()).isEqualTo(new ProductRecord.Valid(1,
+                new Laptop(null, "Laptop", 3, 900, 16, List.of("a.png"), "")));
+        assertThat(records.subList(1, 5)).allMatch(ProductRecord.Invalid.class::isInstance)
+                .extracting(ProductRecord::line).containsExactly(3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    @DisplayName("CSV values are read by the columns of the header")
+    void csvValuesAreReadByTheColumnsOfTheHeader() throws Exception {
+        var records = readAll(IngestionFormat.CSV, """
+                price,productName,quantity,ram,images,description
+                900,"Laptop, 14\"\"",3,16,a.png|b.png,
+                900,Laptop,three,16,,
+                900,Laptop,3,16
+                """);
+
+        assertThat(records).containsExactly(
+                new ProductRecord.Valid(2, new Laptop(null, "Laptop, 14\"", 3, 900, 16, List.of("a.png", "b.png"), "")),
+                new ProductRecord.Invalid(3, "Invalid quantity: three"),
+                new ProductRecord.Invalid(4, "Expected 6 values, found 4"));
+    }
+
+    @Test
+    @DisplayName("A CSV header without a required column rejects the whole upload")
+    void aCsvHeaderWithoutARequiredColumnRejectsTheUpload() {
+        assertThatThrownBy(() -> readAll(IngestionFormat.CSV, "productName,quantity,price\n"))
+                .isInstanceOf(InvalidUploadException.class)
+                .hasMessage("Missing column ram");
+    }
+
+    private static List<ProductRecord> readAll(IngestionFormat format, String upload) throws IOException, InvalidUploadException {
+        var records = new ArrayList<ProductRecord>();
+        try (var reader = ProductRecordReader.of(format, LAPTOP, new StringReader(upload))) {
+            ProductRecord record;
+            while ((record = reader.next()) != null) records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,99 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchCacheUnitTests {
+
+    final ObjectId productId = new ObjectId();
+    final AtomicInteger searches = new AtomicInteger();
+    final ProductSearchCache searchCache = new ProductSearchCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void openStream() {
+        searchCache.onStreamOpened();
+    }
+
+    @Test
+    @DisplayName("Queries that differ only in the spelling of lastId share the cached result")
+    void equivalentQueriesShareTheCachedResult() {
+        var lastId = new ObjectId().toHexString();
+        searchCache.get(laptopQuery(100, lastId, 16), this::search);
+        searchCache.get(laptopQuery(100, lastId.toUpperCase(), 16), this::search);
+
+        assertThat(searches).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Quantity changes patch the cached results")
+    void quantityChangesPatchTheCachedResults() {
+        var query = laptopQuery(null, null, null);
+        searchCache.get(query, this::search);
+
+        searchCache.onChange(update(new BsonDocument("quantity", new BsonInt32(2)), 2));
+
+        assertThat(searchCache.get(query, this::search)).extracting(ProductView::quantity).containsExactly(2);
+        assertThat(searches).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Other changes evict the cached results of the category")
+    void otherChangesEvictTheResultsOfTheCategory() {
+        var query = laptopQuery(null, null, null);
+        searchCache.get(query, this::search);
+
+        searchCache.onChange(update(new BsonDocument("productName", new BsonString("renamed")), 10));
+        searchCache.get(query, this::search);
+
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Results searched while a product of their category changed are not kept")
+    void resultsSearchedWhileAProductChangedAreNotKept() {
+        var query = laptopQuery(null, null, null);
+
+        searchCache.get(query, () -> {
+            searchCache.onChange(update(new BsonDocument("quantity", new BsonInt32(2)), 2));
+            return search();
+        });
+        searchCache.get(query, this::search);
+
+        assertThat(searches).hasValue(2);
+    }
+
+    private static ProductQuery laptopQuery(Integer minPrice, String lastId, Integer ram) {
+        return new ProductQuery.ForLaptop(minPrice, null, null, lastId, ram, ProductSort.DEFAULT, null, ProductQuery.DEFAULT_PAGE_SIZE);
+    }
+
+    private List<ProductView> search() {
+        searches.incrementAndGet();
+        return List.of(new ProductView(productId.toHexString(), "laptop", "image", 10, 700));
+    }
+
+    private ChangeStreamDocument<Document> update(BsonDocument updatedFields, int quantity) {
+        var fullDocument = new Document("_id", productId).append("category", "LAPTOP").append("quantity", quantity);
+        return new ChangeStreamDocument<>("update", null, null, null, fullDocument, null,
+                new BsonDocument("_id", new BsonObjectId(productId)), null,
+                new UpdateDescription(List.of(), updatedFields), null, null, null, null, null);
+    }
+}
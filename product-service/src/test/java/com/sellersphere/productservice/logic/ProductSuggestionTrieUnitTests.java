@@ -0,0 +1,120 @@
+package com.sellersphere.productservice.logic;
+
+import com.sellersphere.productservice.data.ProductSuggestion;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.sellersphere.productservice.data.ProductCategory.LAPTOP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSuggestionTrieUnitTests {
+
+    static final String[] WORDS = { "Asus", "ASUS", "rog", "Rog-Strix", "pro", "probook", "g16", "oled", "laptop" };
+
+    final Random random = new Random(11);
+
+    @Test
+    @DisplayName("Suggestions are the most popular products with a key starting with the prefix, through every change")
+    void suggestionsMatchAScanOfTheProducts() {
+        var trie = new ProductSuggestionTrie(ProductSuggestion.MAX_SUGGESTIONS);
+        var products = new HashMap<ObjectId, ProductSuggestionTrie.Entry>();
+        for (int i = 0; i < 300; i++) {
+            var entry = randomEntry(new ObjectId());
+            products.put(entry.id(), entry);
+            trie.upsert(entry);
+        }
+        trie.seal();
+        assertSameSuggestions(trie, products);
+
+        for (int i = 0; i < 3000; i++) {
+            var ids = new ArrayList<>(products.keySet());
+            var id = ids.get(random.nextInt(ids.size()));
+            var entry = products.get(id);
+            switch (random.nextInt(4)) {
+                case 0 -> entry = randomEntry(new ObjectId());
+                case 1 -> entry = new ProductSuggestionTrie.Entry(id, LAPTOP, randomName(), entry.popularity());
+                case 2 -> entry = new ProductSuggestionTrie.Entry(id, LAPTOP, entry.productName(), random.nextInt(20));
+                default -> {
+                    products.remove(id);
+                    trie.remove(id);
+                    entry = null;
+                }
+            }
+            if (entry != null) {
+                products.put(entry.id(), entry);
+                trie.upsert(entry);
+            }
+            if (i % 300 == 0) assertSameSuggestions(trie, products);
+        }
+        assertSameSuggestions(trie, products);
+        assertThat(trie.size()).isEqualTo(products.size());
+    }
+
+    @Test
+    @DisplayName("Names are suggested from their first words, up to the length of a prefix")
+    void namesAreSuggestedFromTheirFirstWords() {
+        var trie = new ProductSuggestionTrie(ProductSuggestion.MAX_SUGGESTIONS);
+        var id = new ObjectId();
+        trie.upsert(new ProductSuggestionTrie.Entry(id, LAPTOP, "Acer Swift Go 14 (OLED, Intel Core Ultra 7 155H)", 3));
+        trie.seal();
+
+        var suggestion = new ProductSuggestion(id.toHexString(), "Acer Swift Go 14 (OLED, Intel Core Ultra 7 155H)");
+        assertThat(trie.suggest(LAPTOP, "swift go 1", 10)).containsExactly(suggestion);
+        assertThat(trie.suggest(LAPTOP, "go 14 oled intel core ultra 7 15", 10)).containsExactly(suggestion);
+        assertThat(trie.suggest(LAPTOP, "acer ", 10)).containsExactly(suggestion);
+        assertThat(trie.suggest(LAPTOP, "oled", 10)).isEmpty();
+        assertThat(trie.suggest(LAPTOP, "swift g ", 10)).isEmpty();
+
+        trie.remove(id);
+        assertThat(trie.suggest(LAPTOP, "acer", 10)).isEmpty();
+    }
+
+    private void assertSameSuggestions(ProductSuggestionTrie trie, Map<ObjectId, ProductSuggestionTrie.Entry> products) {
+        var keys = new HashMap<ProductSuggestionTrie.Entry, List<String>>();
+        var prefixes = new HashSet<String>();
+        for (var entry : products.values()) {
+            keys.put(entry, keys(entry.productName()));
+            for (String key : keys.get(entry)) {
+                for (int length = 1; length <= key.length(); length++) prefixes.add(key.substring(0, length));
+            }
+        }
+        prefixes.add("x");
+        for (String prefix : prefixes) {
+            assertThat(trie.suggest(LAPTOP, prefix, 10)).as(prefix).isEqualTo(scan(keys, prefix, 10));
+        }
+        assertThat(trie.suggest(LAPTOP, "pro", 3)).isEqualTo(scan(keys, "pro", 3));
+    }
+
+    private static List<ProductSuggestion> scan(Map<ProductSuggestionTrie.Entry, List<String>> keys, String prefix, int limit) {
+        return keys.keySet().stream()
+                .filter(entry -> keys.get(entry).stream().anyMatch(key -> key.startsWith(prefix)))
+                .sorted(Comparator.comparingLong(ProductSuggestionTrie.Entry::popularity)
+                        .thenComparing(ProductSuggestionTrie.Entry::id).reversed())
+                .limit(limit)
+                .map(entry -> new ProductSuggestion(entry.id().toHexString(), entry.productName()))
+                .toList();
+    }
+
+    private static List<String> keys(String productName) {
+        var words = ProductSuggestion.normalize(productName).split(" ");
+        var keys = new ArrayList<String>();
+        for (int i = 0; i < words.length && i < ProductSuggestionTrie.WORD_STARTS; i++) {
+            var key = String.join(" ", Arrays.asList(words).subList(i, words.length));
+            keys.add(key.substring(0, Math.min(key.length(), ProductSuggestion.MAX_PREFIX_LENGTH)));
+        }
+        return keys;
+    }
+
+    private ProductSuggestionTrie.Entry randomEntry(ObjectId id) {
+        return new ProductSuggestionTrie.Entry(id, LAPTOP, randomName(), random.nextInt(20));
+    }
+
+    private String randomName() {
+        var words = new StringJoiner(" ");
+        for (int i = random.nextInt(6); i >= 0; i--) words.add(WORDS[random.nextInt(WORDS.length)]);
+        return words.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.sellersphere.productservice.logic;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+class ProductTextIndexUnitTests {
+
+    static final String[] WORDS = { "gaming", "laptop", "ultrabook", "oled", "thin" };
+
+    final Random random = new Random(3);
+    final MongoClient mongoClient = mock(MongoClient.class, RETURNS_DEEP_STUBS);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Text searches page through the products with all the words, in the order of every sort")
+    void textSearchesMatchAScanOfTheProducts() throws Exception {
+        var textIndex = textIndex();
+        var products = new ArrayList<Document>();
+        for (int i = 0; i < 300; i++) {
+            var product = randomProduct(new ObjectId(new Date(random.nextLong(1_700_000_000_000L)), random.nextInt(1 << 24)));
+            products.add(product);
+            textIndex.onChange(insert(product, "token" + i));
+        }
+        textIndex.onStreamResumed();
+
+        for (ProductSort sort : ProductSort.values()) {
+            for (Integer ram : new Integer[]{ null, 16 }) {
+                var expected = scan(products, "gaming laptop", sort, ram, 200, null);
+                assertThat(pageThrough(textIndex, "gaming laptop", sort, ram, 200))
+                        .as("sort %s, ram %s", sort, ram)
+                        .isNotEmpty()
+                        .containsExactlyElementsOf(expected);
+            }
+        }
+        textIndex.shutdown();
+    }
+
+    @Test
+    @DisplayName("A restart resumes after the changes of the last commit")
+    void aRestartResumesAfterTheLastCommit() throws Exception {
+        var textIndex = textIndex();
+        var product = randomProduct(new ObjectId()).append("productName", "Oled ultrabook");
+        textIndex.onChange(insert(product, "first"));
+        textIndex.onCaughtUp(token("second"));
+        textIndex.shutdown();
+
+        var restarted = textIndex();
+        restarted.onStreamResumed();
+
+        assertThat(restarted.resumeToken()).isEqualTo(token("second"));
+        assertThat(restarted.search(query("ultrabook", ProductSort.DEFAULT, null, null, null)).orElseThrow())
+                .extracting(ProductView::productId)
+                .containsExactly(product.getObjectId("_id").toHexString());
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("The scan matches the whole words of the names and descriptions, like the text index")
+    void theScanMatchesWholeWordsLikeTheTextIndex() throws Exception {
+        var textIndex = textIndex();
+        var products = new ArrayList<Document>();
+        for (String name : new String[]{ "Gaming laptop", "Gaming laptops", "Notebook", "Laptop-book 14\"", "LAPTOP/book" }) {
+            var product = randomProduct(new ObjectId()).append("productName", name).append("description", "");
+            products.add(product);
+            textIndex.onChange(insert(product, name));
+        }
+        textIndex.onStreamResumed();
+
+        for (String text : new String[]{ "laptop", "book", "laptop book", "14", "gaming" }) {
+            assertThat(pageThrough(textIndex, text, ProductSort.DEFAULT, null, null))
+                    .as(text)
+                    .containsExactlyElementsOf(scan(products, text, ProductSort.DEFAULT, null, null, null));
+        }
+        assertThat(scan(products, "book", ProductSort.DEFAULT, null, null, null)).hasSize(2);
+        textIndex.shutdown();
+    }
+
+    @Test
+    @DisplayName("An index that cannot be read is recreated, an index in use by another instance is kept")
+    void onlyAnIndexThatCannotBeReadIsRecreated() throws Exception {
+        Files.writeString(directory.resolve("segments_1"), "not an index");
+        var textIndex = textIndex();
+        var product = randomProduct(new ObjectId()).append("productName", "Oled ultrabook");
+        textIndex.onChange(insert(product, "first"));
+        textIndex.onStreamResumed();
+
+        assertThatThrownBy(this::textIndex).isInstanceOf(LockObtainFailedException.class);
+        assertThat(textIndex.search(query("ultrabook", ProductSort.DEFAULT, null, null, null)).orElseThrow())
+                .extracting(ProductView::productId)
+                .containsExactly(product.getObjectId("_id").toHexString());
+        textIndex.shutdown();
+    }
+
+    @Test
+    @DisplayName("Without a path every instance has a temporary index of its own")
+    void withoutAPathEveryInstanceHasATemporaryIndexOfItsOwn() throws Exception {
+        var first = new ProductTextIndex(mongoClient, new SimpleMeterRegistry(), "", Duration.ofMinutes(1), Duration.ofMinutes(1));
+        var second = new ProductTextIndex(mongoClient, new SimpleMeterRegistry(), "", Duration.ofMinutes(1), Duration.ofMinutes(1));
+        var product = randomProduct(new ObjectId()).append("productName", "Oled ultrabook");
+        first.onChange(insert(product, "first"));
+        first.onStreamResumed();
+        second.onStreamResumed();
+
+        assertThat(first.search(query("ultrabook", ProductSort.DEFAULT, null, null, null)).orElseThrow()).hasSize(1);
+        assertThat(second.search(query("ultrabook", ProductSort.DEFAULT, null, null, null)).orElseThrow()).isEmpty();
+        first.shutdown();
+        second.shutdown();
+    }
+
+    private ProductTextIndex textIndex() throws Exception {
+        return new ProductTextIndex(mongoClient, new SimpleMeterRegistry(), directory.toString(),
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    private static List<String> pageThrough(ProductTextIndex textIndex, String text, ProductSort sort, Integer ram, Integer minPrice) throws Exception {
+        var productIds = new ArrayList<String>();
+        ProductCursor cursor = null;
+        while (true) {
+            var page = textIndex.search(query(text, sort, ram, minPrice, cursor)).orElseThrow();
+            page.forEach(view -> productIds.add(view.productId()));
+            if (page.size() < 10) return productIds;
+            var last = page.getLast();
+            cursor = new ProductCursor(sort, last.price(), last.productId());
+        }
+    }
+
+    private static List<String> scan(List<Document> products, String text, ProductSort sort, Integer ram, Integer minPrice, Integer maxPrice) {
+        Comparator<Document> byId = Comparator.comparing(product -> product.getObjectId("_id"));
+        Comparator<Document> byPrice = Comparator.<Document>comparingInt(product -> product.getInteger("price")).thenComparing(byId);
+        var order = switch (sort) {
+            case DEFAULT -> byId;
+            case NEWEST -> byId.reversed();
+            case PRICE_ASC -> byPrice;
+            case PRICE_DESC -> byPrice.reversed();
+        };
+        return products.stream()
+                // the filter of the scan the text index stands in for
+                .filter(product -> Arrays.stream(text.split(" ")).map(ProductQueryEncoder::wholeWord).allMatch(word ->
+                        word.matcher(product.getString("productName")).find() || word.matcher(product.getString("description")).find()))
+                .filter(product -> ram == null || product.getInteger("ram") == ram)
+                .filter(product -> minPrice == null || product.getInteger("price") >= minPrice)
+                .filter(product -> maxPrice == null || product.getInteger("price") <= maxPrice)
+                .sorted(order)
+                .map(product -> product.getObjectId("_id").toHexString())
+                .toList();
+    }
+
+    private static ProductQuery query(String text, ProductSort sort, Integer ram, Integer minPrice, ProductCursor cursor) {
+        return new ProductQuery.ForLaptop(minPrice, null, text, null, ram, sort, cursor, 10);
+    }
+
+    private Document randomProduct(ObjectId id) {
+        return new Document("_id", id)
+                .append("category", "LAPTOP")
+                .append("productName", WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)])
+                .append("description", WORDS[random.nextInt(WORDS.length)])
+                .append("price", random.nextInt(1000))
+                .append("ram", 8 << random.nextInt(2))
+                .append("quantity", random.nextInt(20))
+                .append("images", List.of("image"));
+    }
+
+    private static ChangeStreamDocument<Document> insert(Document product, String resumeToken) {
+        return new ChangeStreamDocument<>("insert", token(resumeToken), null, null, product, null,
+                new BsonDocument("_id", new BsonObjectId(product.getObjectId("_id"))), null,
+                null, null, null, null, null, null);
+    }
+
+    private static BsonDocument token(String data) {
+        return new BsonDocument("_data", new BsonString(data));
+    }
+}
@@ -1,7 +1,9 @@
 package com.sellersphere.productservice.rest;
 
 import com.sellersphere.productservice.data.ProductCategory;
+import com.sellersphere.productservice.data.ProductCursor;
 import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -23,7 +25,70 @@ class ProductQueryFactoryImplUnitTests {
     void createAEmptyQuery() {
         var productQuery = assertDoesNotThrow(() -> factory.create(LAPTOP, Map.of()));
 
-        assertThat(productQuery).isEqualTo(new ProductQuery.ForLaptop(null, null, null, null));
+        assertThat(productQuery).isEqualTo(new ProductQuery.ForLaptop(null, null, null, null, null,
+                ProductSort.DEFAULT, null, ProductQuery.DEFAULT_PAGE_SIZE));
+    }
+
+    @Test
+    @DisplayName("A cursor made for the next page is decoded back")
+    void aCursorIsDecodedBack() {
+        var cursor = new ProductCursor(ProductSort.PRICE_DESC, 950, "66fabd5c84e4461f161eb753");
+
+        var productQuery = assertDoesNotThrow(() -> factory.create(LAPTOP, Map.of("sort", "price_desc", "cursor", cursor.encode())));
+
+        assertThat(productQuery.cursor()).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("The text is reduced to its lower case words")
+    void theTextIsReducedToItsWords() {
+        var productQuery = assertDoesNotThrow(() -> factory.create(LAPTOP, Map.of("text", "  Gaming, LAPTOP i7-13700H ")));
+
+        assertThat(productQuery.text()).isEqualTo("gaming laptop i7 13700h");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " -- ", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"})
+    @DisplayName("The text must have words and at most 100 characters")
+    void theTextMustHaveWords(String text) {
+        assertThrows(InvalidProductQueryException.class, () -> factory.create(LAPTOP, Map.of("text", text)));
+    }
+
+    @Test
+    @DisplayName("A suggestion prefix is reduced to its lower case words, with a space after a whole last word")
+    void aSuggestionPrefixIsReducedToItsWords() throws InvalidProductQueryException {
+        assertThat(factory.createSuggestionPrefix("ROG-Str")).isEqualTo("rog str");
+        assertThat(factory.createSuggestionPrefix("  Asus  ")).isEqualTo("asus ");
+        assertThat(factory.createSuggestionPrefix("Lenovo ThinkPad X1 Carbon Gen 12 (Intel)")).isEqualTo("lenovo thinkpad x1 carbon gen 12");
+        assertThrows(InvalidProductQueryException.class, () -> factory.createSuggestionPrefix(" - "));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"invalid", "", "AAAAAAAAAAAAAAAAAAAAAAAA", "ZmFrZQ"})
+    @DisplayName("Cursors must be made by the service")
+    void cursorsMustBeMadeByTheService(String cursor) {
+        assertThrows(InvalidProductQueryException.class, () -> factory.create(LAPTOP, Map.of("cursor", cursor)));
+    }
+
+    @Test
+    @DisplayName("A cursor only pages the sort it was made for")
+    void aCursorOnlyPagesItsSort() {
+        var cursor = new ProductCursor(ProductSort.PRICE_ASC, 950, "66fabd5c84e4461f161eb753").encode();
+
+        assertThrows(InvalidProductQueryException.class, () -> factory.create(LAPTOP, Map.of("sort", "newest", "cursor", cursor)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "51", "-1", "ten"})
+    @DisplayName("pageSize must be between 1 and 50")
+    void pageSizeMustBeWithinLimits(String pageSize) {
+        assertThrows(InvalidProductQueryException.class, () -> factory.create(LAPTOP, Map.of("pageSize", pageSize)));
+    }
+
+    @Test
+    @DisplayName("Unknown sorts are rejected")
+    void unknownSortsAreRejected() {
+        assertThrows(InvalidProductQueryException.class, () -> factory.create(LAPTOP, Map.of("sort", "rating")));
     }
 
     @ParameterizedTest
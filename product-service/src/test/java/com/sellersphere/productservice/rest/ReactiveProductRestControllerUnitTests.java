@@ -0,0 +1,126 @@
+package com.sellersphere.productservice.rest;
+
+import com.sellersphere.productservice.data.Laptop;
+import com.sellersphere.productservice.data.Product;
+import com.sellersphere.productservice.data.ProductCursor;
+import com.sellersphere.productservice.data.ProductQuery;
+import com.sellersphere.productservice.data.ProductSort;
+import com.sellersphere.productservice.data.ProductView;
+import com.sellersphere.productservice.logic.ReactiveProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveProductRestControllerUnitTests {
+
+    static final String PRODUCT = "66fabd5c84e4461f161eb753";
+    static final ProductView FIRST = new ProductView("66fabd5c84e4461f161eb754", "first", null, 3, 950);
+    static final ProductView SECOND = new ProductView("66fabd5c84e4461f161eb755", "second", "a.png", 1, 900);
+
+    final StubProductService productService = new StubProductService();
+    final LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+    final WebTestClient client;
+
+    ReactiveProductRestControllerUnitTests() {
+        validator.afterPropertiesSet();
+        client = WebTestClient.bindToController(new ReactiveProductRestController(productService, new ProductQueryFactoryImpl()))
+                .validator(validator)
+                .build();
+    }
+
+    @AfterEach
+    void closeValidator() {
+        validator.close();
+    }
+
+    @Test
+    @DisplayName("A full page of a search has the cursor of the next page")
+    void aFullPageOfASearchHasTheCursorOfTheNextPage() {
+        productService.views = List.of(FIRST, SECOND);
+
+        client.get().uri("/products/search/laptop?sort=price_desc&pageSize=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(ProductRestController.NEXT_CURSOR,
+                        new ProductCursor(ProductSort.PRICE_DESC, 900, SECOND.productId()).encode())
+                .expectBodyList(ProductView.class).isEqualTo(List.of(FIRST, SECOND));
+        assertThat(productService.query.pageSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("The last page of a search has no cursor, and a streamed search is written one product per line")
+    void theLastPageOfASearchHasNoCursor() {
+        productService.views = List.of(FIRST, SECOND);
+
+        client.get().uri("/products/search/laptop")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ProductRestController.NEXT_CURSOR)
+                .expectBodyList(ProductView.class).isEqualTo(List.of(FIRST, SECOND));
+        client.get().uri("/products/search/laptop").accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(body -> assertThat(body.lines()).hasSize(2));
+    }
+
+    @Test
+    @DisplayName("An invalid search is a bad request and an unknown category is not found")
+    void anInvalidSearchIsABadRequest() {
+        client.get().uri("/products/search/laptop?pageSize=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/products/search/laptop?cursor=garbage").exchange().expectStatus().isBadRequest();
+        client.get().uri("/products/search/phone").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("A product is looked up by its id, an unknown one is not found")
+    void aProductIsLookedUpByItsId() {
+        var laptop = new Laptop(PRODUCT, "laptop", 3, 950, 16, List.of("a.png"), "description");
+        productService.product = laptop;
+
+        client.get().uri("/products/{productId}", PRODUCT).accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Laptop.class).isEqualTo(laptop);
+        client.get().uri("/products/{productId}", "66fabd5c84e4461f161eb754")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("An id that is not 24 characters long is a bad request")
+    void anIdThatIsNot24CharactersLongIsABadRequest() {
+        client.get().uri("/products/{productId}", "66fabd5c").exchange().expectStatus().isBadRequest();
+        client.get().uri("/products/{productId}", PRODUCT + "0").exchange().expectStatus().isBadRequest();
+        assertThat(productService.lookedUp).isEmpty();
+    }
+
+    static final class StubProductService implements ReactiveProductService {
+
+        List<ProductView> views = List.of();
+        Product product;
+        ProductQuery query;
+        final List<String> lookedUp = new ArrayList<>();
+
+        @Override
+        public Flux<ProductView> searchProducts(ProductQuery query) {
+            this.query = query;
+            return Flux.fromIterable(views);
+        }
+
+        @Override
+        public Mono<Product> findProductById(String productId) {
+            lookedUp.add(productId);
+            return product instanceof Laptop laptop && laptop.productId().equals(productId) ? Mono.just(product) : Mono.empty();
+        }
+    }
+}
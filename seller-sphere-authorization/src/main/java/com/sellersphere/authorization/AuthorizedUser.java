@@ -1,13 +1,57 @@
 package com.sellersphere.authorization;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 public record AuthorizedUser(String userId) {
 
-    static final ThreadLocal<AuthorizedUser> AUTHORIZED_USER_THREAD_LOCAL = new ThreadLocal<>();
+    private static volatile AuthorizedUserCarrier carrier = ThreadLocalAuthorizedUserCarrier.INSTANCE;
+    private static boolean configured;
+
+    /**
+     * Selects the carrier of the whole JVM, once. Selecting another carrier afterwards fails
+     * instead of switching the carrier under the requests that are being handled.
+     */
+    static synchronized void configure(AuthorizedUserCarrier selected) {
+        if (configured && carrier != selected) {
+            throw new IllegalStateException("The authorized user is already carried by ".concat(carrier.getClass().getSimpleName()));
+        }
+        carrier = selected;
+        configured = true;
+    }
 
     public static Optional<AuthorizedUser> current(){
-        return Optional.ofNullable(AUTHORIZED_USER_THREAD_LOCAL.get());
+        return carrier.current();
+    }
+
+    /**
+     * Wraps the task so that it runs as the current user, for tasks handed to an executor.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        var user = current().orElse(null);
+        if (user == null) return task;
+        var userCarrier = carrier;
+        return () -> userCarrier.callAs(user, task);
+    }
+
+    /**
+     * Wraps the task so that it runs as the current user, for tasks handed to an executor.
+     */
+    public static Runnable propagate(Runnable task) {
+        var user = current().orElse(null);
+        if (user == null) return task;
+        var userCarrier = carrier;
+        return () -> userCarrier.runAs(user, task);
+    }
+
+    /**
+     * Runs the tasks concurrently as the current user and returns their results in order.
+     * The first failure is rethrown as an {@link ExecutionException}.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return carrier.invokeAll(tasks);
     }
 
 }
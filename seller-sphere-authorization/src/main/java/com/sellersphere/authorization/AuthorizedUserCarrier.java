@@ -0,0 +1,29 @@
+package com.sellersphere.authorization;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Binds the {@link AuthorizedUser} to the code that handles a request.
+ */
+interface AuthorizedUserCarrier {
+
+    Optional<AuthorizedUser> current();
+
+    <T> T callAs(AuthorizedUser user, Callable<T> task) throws Exception;
+
+    void runAs(AuthorizedUser user, Runnable task);
+
+    <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException;
+
+    static AuthorizedUserCarrier of(String name) {
+        return switch (name) {
+            case "thread-local" -> ThreadLocalAuthorizedUserCarrier.INSTANCE;
+            // loaded only when selected, the JVM must then run with --enable-preview
+            case "scoped-value" -> ScopedValueAuthorizedUserCarrier.INSTANCE;
+            default -> throw new IllegalArgumentException("Unknown authorized user carrier: ".concat(name));
+        };
+    }
+}
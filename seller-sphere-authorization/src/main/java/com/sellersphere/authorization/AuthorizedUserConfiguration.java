@@ -0,0 +1,19 @@
+package com.sellersphere.authorization;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+class AuthorizedUserConfiguration {
+
+    /**
+     * The carrier selected by {@code security.authorized-user.carrier}, also used by {@link AuthorizedUser#current()}.
+     */
+    @Bean
+    AuthorizedUserCarrier authorizedUserCarrier(@Value("${security.authorized-user.carrier:thread-local}") String name) {
+        var carrier = AuthorizedUserCarrier.of(name);
+        AuthorizedUser.configure(carrier);
+        return carrier;
+    }
+}
@@ -0,0 +1,453 @@
+package com.sellersphere.authorization;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Verifier specialised for the HS256 access tokens issued by the user-service.
+ * <p>
+ * The fast path decodes the token into pooled buffers, checks the MAC with a pooled {@link Mac} and
+ * scans the payload for {@code iss}, {@code sub}, {@code exp} and {@code Scope} without building a
+ * JSON tree. It only ever <em>accepts</em> tokens: anything it does not fully understand (another
+ * algorithm, escaped strings, an invalid signature, ...) is handed to the auth0 verifier, so the
+ * outcome is always the one auth0 would give.
+ */
+public final class Hs256TokenVerifier {
+
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final byte[] ALG = bytes("alg"), HS256 = bytes("HS256"), USER = bytes("user");
+    private static final byte[] ISS = bytes("iss"), SUB = bytes("sub"), SCOPE = bytes("Scope");
+    private static final byte[] EXP = bytes("exp"), NBF = bytes("nbf"), IAT = bytes("iat");
+    private static final byte[] BASE64_URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_URL, (byte) -1);
+        var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) BASE64_URL[alphabet.charAt(i)] = (byte) i;
+    }
+
+    private final Clock clock;
+    private final byte[] issuer;
+    private final SecretKeySpec key;
+    private final JWTVerifier fallback;
+    private final ArrayBlockingQueue<Scratch> pool;
+    private volatile String trustedHeader;
+
+    public Hs256TokenVerifier(String issuer, String secret) {
+        this(issuer, secret, Clock.systemUTC());
+    }
+
+    public Hs256TokenVerifier(String issuer, String secret, Clock clock) {
+        this.clock = clock;
+        this.issuer = issuer.getBytes(StandardCharsets.UTF_8);
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.fallback = JWT.require(Algorithm.HMAC256(secret))
+                .withIssuer(issuer)
+                .withClaimPresence("Scope")
+                .withClaimPresence("sub")
+                .build();
+        this.pool = new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    public VerifiedToken verify(String token) throws JWTVerificationException {
+        var verified = verifyFast(token);
+        if (verified != null) return verified;
+        DecodedJWT jwt = fallback.verify(token);
+        return new VerifiedToken(jwt.getSubject(), jwt.getClaim("Scope").asString(), jwt.getExpiresAtAsInstant());
+    }
+
+    /**
+     * @return the verified token, or {@code null} when the token must go through the fallback verifier
+     */
+    VerifiedToken verifyFast(String token) {
+        var scratch = pool.poll();
+        if (scratch == null) scratch = new Scratch(key);
+        try {
+            return verifyFast(token, scratch);
+        } finally {
+            pool.offer(scratch);
+        }
+    }
+
+    private VerifiedToken verifyFast(String token, Scratch scratch) {
+        int length = token.length();
+        var ascii = scratch.ascii(length);
+        int firstDot = -1, secondDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c > 0x7F) return null;
+            if (c == '.') {
+                if (firstDot < 0) firstDot = i;
+                else if (secondDot < 0) secondDot = i;
+                else return null;
+            }
+            ascii[i] = (byte) c;
+        }
+        if (secondDot < 0) return null;
+
+        if (!isTrustedHeader(token, ascii, firstDot, scratch)) return null;
+
+        if (decodeBase64Url(ascii, secondDot + 1, length, scratch.signature) != SIGNATURE_LENGTH) return null;
+        var mac = scratch.mac;
+        mac.update(ascii, 0, secondDot);
+        try {
+            mac.doFinal(scratch.expectedSignature, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!constantTimeEquals(scratch.signature, scratch.expectedSignature)) return null;
+
+        var payload = scratch.payload(decodedLength(secondDot - firstDot - 1));
+        int payloadLength = decodeBase64Url(ascii, firstDot + 1, secondDot, payload);
+        if (payloadLength < 0) return null;
+        return scanPayload(payload, payloadLength, scratch.claims.reset());
+    }
+
+    private boolean isTrustedHeader(String token, byte[] ascii, int firstDot, Scratch scratch) {
+        var trusted = trustedHeader;
+        if (trusted != null && trusted.length() == firstDot && token.startsWith(trusted)) return true;
+        var header = scratch.payload(decodedLength(firstDot));
+        int headerLength = decodeBase64Url(ascii, 0, firstDot, header);
+        if (headerLength < 0 || !isHs256Header(header, headerLength, scratch.claims.reset())) return false;
+        trustedHeader = token.substring(0, firstDot);
+        return true;
+    }
+
+    private static boolean isHs256Header(byte[] json, int length, Claims claims) {
+        var scanner = new Scanner(json, length);
+        if (!scanner.object((s, keyStart, keyEnd) -> {
+            if (!equals(json, keyStart, keyEnd, ALG)) return s.skipValue();
+            return claims.alg.capture(s);
+        })) return false;
+        return claims.alg.isSet() && claims.alg.equals(json, HS256);
+    }
+
+    private VerifiedToken scanPayload(byte[] json, int length, Claims claims) {
+        var scanner = new Scanner(json, length);
+        boolean wellFormed = scanner.object((s, keyStart, keyEnd) -> {
+            if (equals(json, keyStart, keyEnd, ISS)) return claims.iss.capture(s);
+            if (equals(json, keyStart, keyEnd, SUB)) return claims.sub.capture(s);
+            if (equals(json, keyStart, keyEnd, SCOPE)) return claims.scope.capture(s);
+            if (equals(json, keyStart, keyEnd, EXP)) return claims.exp.capture(s);
+            if (equals(json, keyStart, keyEnd, NBF)) return claims.nbf.capture(s);
+            if (equals(json, keyStart, keyEnd, IAT)) return claims.iat.capture(s);
+            return s.skipValue();
+        });
+        if (!wellFormed || !claims.iss.isSet() || !claims.sub.isSet() || !claims.scope.isSet()) return null;
+        if (!claims.iss.equals(json, issuer)) return null;
+        long now = clock.instant().getEpochSecond();
+        if (claims.exp.isSet() && claims.exp.value <= now) return null;
+        if (claims.nbf.isSet() && claims.nbf.value > now) return null;
+        if (claims.iat.isSet() && claims.iat.value > now) return null;
+        var subject = new String(json, claims.sub.start, claims.sub.end - claims.sub.start, StandardCharsets.UTF_8);
+        var scope = claims.scope.equals(json, USER) ? "user"
+                : new String(json, claims.scope.start, claims.scope.end - claims.scope.start, StandardCharsets.UTF_8);
+        return new VerifiedToken(subject, scope, claims.exp.isSet() ? Instant.ofEpochSecond(claims.exp.value) : null);
+    }
+
+    private static int decodedLength(int encodedLength) {
+        return encodedLength / 4 * 3 + 2;
+    }
+
+    /**
+     * Decodes unpadded base64url into {@code out}.
+     *
+     * @return the number of decoded bytes, or -1 if the input is not valid unpadded base64url
+     */
+    static int decodeBase64Url(byte[] in, int from, int to, byte[] out) {
+        if ((to - from) % 4 == 1) return -1;
+        int o = 0, bits = 0, buffered = 0;
+        for (int i = from; i < to; i++) {
+            int c = in[i];
+            int value = c < 0 ? -1 : BASE64_URL[c];
+            if (value < 0) return -1;
+            bits = (bits << 6) | value;
+            buffered += 6;
+            if (buffered >= 8) {
+                buffered -= 8;
+                if (o == out.length) return -1;
+                out[o++] = (byte) (bits >> buffered);
+            }
+        }
+        return o;
+    }
+
+    private static boolean constantTimeEquals(byte[] a, byte[] b) {
+        int diff = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) diff |= a[i] ^ b[i];
+        return diff == 0;
+    }
+
+    private static boolean equals(byte[] json, int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (json[start + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Buffers and {@link Mac} reused across verifications, one instance per concurrent caller.
+     */
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] signature = new byte[SIGNATURE_LENGTH + 1];
+        final byte[] expectedSignature = new byte[SIGNATURE_LENGTH];
+        final Claims claims = new Claims();
+        byte[] ascii = new byte[512];
+        byte[] payload = new byte[384];
+
+        Scratch(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        }
+
+        byte[] ascii(int length) {
+            if (ascii.length < length) ascii = new byte[length];
+            return ascii;
+        }
+
+        byte[] payload(int length) {
+            if (payload.length < length) payload = new byte[length];
+            return payload;
+        }
+    }
+
+    private static final class Claims {
+        final StringClaim alg = new StringClaim(), iss = new StringClaim(), sub = new StringClaim(), scope = new StringClaim();
+        final NumericClaim exp = new NumericClaim(), nbf = new NumericClaim(), iat = new NumericClaim();
+
+        Claims reset() {
+            alg.reset(); iss.reset(); sub.reset(); scope.reset();
+            exp.reset(); nbf.reset(); iat.reset();
+            return this;
+        }
+    }
+
+    /**
+     * A string claim without escape sequences, kept as a [start, end) range of the decoded json.
+     */
+    private static final class StringClaim {
+        int start = -1, end;
+
+        void reset() {
+            start = -1;
+        }
+
+        boolean isSet() {
+            return start >= 0;
+        }
+
+        boolean capture(Scanner scanner) {
+            if (isSet()) return false; // duplicated claim
+            int valueStart = scanner.plainString();
+            if (valueStart < 0) return false;
+            start = valueStart;
+            end = scanner.position - 1;
+            return true;
+        }
+
+        boolean equals(byte[] json, byte[] expected) {
+            return Hs256TokenVerifier.equals(json, start, end, expected);
+        }
+    }
+
+    private static final class NumericClaim {
+        boolean set;
+        long value;
+
+        void reset() {
+            set = false;
+        }
+
+        boolean isSet() {
+            return set;
+        }
+
+        boolean capture(Scanner scanner) {
+            if (set) return false; // duplicated claim
+            long parsed = scanner.unsignedLong();
+            if (parsed < 0) return false;
+            value = parsed;
+            set = true;
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    private interface MemberHandler {
+        /**
+         * Consumes the value of the member, returns false if the json must go through the fallback verifier.
+         */
+        boolean onMember(Scanner scanner, int keyStart, int keyEnd);
+    }
+
+    /**
+     * Minimal scanner of a flat json object. Every method returns a negative value or false when
+     * the input is malformed or uses something the fast path does not handle.
+     */
+    private static final class Scanner {
+        private static final int MAX_DEPTH = 32;
+
+        final byte[] json;
+        final int length;
+        int position;
+
+        Scanner(byte[] json, int length) {
+            this.json = json;
+            this.length = length;
+        }
+
+        boolean object(MemberHandler handler) {
+            skipWhitespace();
+            if (!consume('{')) return false;
+            skipWhitespace();
+            if (!consume('}')) {
+                do {
+                    skipWhitespace();
+                    int keyStart = plainString();
+                    if (keyStart < 0) return false;
+                    int keyEnd = position - 1;
+                    skipWhitespace();
+                    if (!consume(':')) return false;
+                    skipWhitespace();
+                    if (!handler.onMember(this, keyStart, keyEnd)) return false;
+                    skipWhitespace();
+                } while (consume(','));
+                if (!consume('}')) return false;
+            }
+            skipWhitespace();
+            return position == length;
+        }
+
+        /**
+         * Reads a string without escape sequences.
+         *
+         * @return the start of the string content, the scanner is left after the closing quote
+         */
+        int plainString() {
+            if (!consume('"')) return -1;
+            int start = position;
+            while (position < length) {
+                byte b = json[position++];
+                if (b == '"') return start;
+                if (b == '\\' || (b >= 0 && b < 0x20)) return -1;
+            }
+            return -1;
+        }
+
+        long unsignedLong() {
+            int start = position;
+            long value = 0;
+            while (position < length && json[position] >= '0' && json[position] <= '9') {
+                if (position - start == 18) return -1;
+                value = value * 10 + (json[position++] - '0');
+            }
+            if (position == start || (json[start] == '0' && position - start > 1)) return -1;
+            if (position < length && (json[position] == '.' || json[position] == 'e' || json[position] == 'E')) return -1;
+            return value;
+        }
+
+        boolean skipValue() {
+            return skipValue(0);
+        }
+
+        private boolean skipValue(int depth) {
+            if (position >= length || depth > MAX_DEPTH) return false;
+            switch (json[position]) {
+                case '"' -> {
+                    position++;
+                    while (position < length) {
+                        byte b = json[position++];
+                        if (b == '"') return true;
+                        if (b == '\\') position++;
+                    }
+                    return false;
+                }
+                case '{', '[' -> {
+                    byte close = json[position] == '{' ? (byte) '}' : (byte) ']';
+                    position++;
+                    skipWhitespace();
+                    if (consume(close)) return true;
+                    do {
+                        skipWhitespace();
+                        if (close == '}') {
+                            if (plainString() < 0) return false;
+                            skipWhitespace();
+                            if (!consume(':')) return false;
+                            skipWhitespace();
+                        }
+                        if (!skipValue(depth + 1)) return false;
+                        skipWhitespace();
+                    } while (consume(','));
+                    return consume(close);
+                }
+                default -> {
+                    int start = position;
+                    while (position < length) {
+                        byte b = json[position];
+                        if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') break;
+                        position++;
+                    }
+                    return literal(start, position);
+                }
+            }
+        }
+
+        private boolean literal(int start, int end) {
+            if (start == end) return false;
+            if (matches(start, end, "true") || matches(start, end, "false") || matches(start, end, "null")) return true;
+            for (int i = start; i < end; i++) {
+                byte b = json[i];
+                if (!((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E')) return false;
+            }
+            return true;
+        }
+
+        private boolean matches(int start, int end, String literal) {
+            if (end - start != literal.length()) return false;
+            for (int i = 0; i < literal.length(); i++) {
+                if (json[start + i] != literal.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private boolean consume(int c) {
+            if (position < length && json[position] == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < length) {
+                byte b = json[position];
+                if (b != ' ' && b != '\t' && b != '\n' && b != '\r') return;
+                position++;
+            }
+        }
+    }
+}
@@ -1,10 +1,6 @@
 package com.sellersphere.authorization;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,15 +14,17 @@ import java.io.IOException;
 @Component
 public final class JwtAuthorizationFilter extends OncePerRequestFilter {
 
-    private final JWTVerifier verifier;
+    private final Hs256TokenVerifier verifier;
+    private final VerifiedTokenCache tokenCache;
+    private final AuthorizedUserCarrier carrier;
 
     public JwtAuthorizationFilter(@Value("${security.jwt.issuer:https://seller-sphere.com}") String issuer,
-                                  @Value("${security.jwt.secret}") String secret) {
-        this.verifier = JWT.require(Algorithm.HMAC256(secret))
-                .withIssuer(issuer)
-                .withClaimPresence("Scope")
-                .withClaimPresence("sub")
-                .build();
+                                  @Value("${security.jwt.secret}") String secret,
+                                  AuthorizedUserCarrier carrier,
+                                  VerifiedTokenCache tokenCache) {
+        this.verifier = new Hs256TokenVerifier(issuer, secret);
+        this.tokenCache = tokenCache;
+        this.carrier = carrier;
     }
 
     @Override
@@ -36,24 +34,26 @@ public final class JwtAuthorizationFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response);
             return;
         }
-        DecodedJWT jwt;
+        VerifiedToken token;
         try {
-            jwt = verifier.verify(authorization.substring("Bearer ".length()));
+            token = tokenCache.verify(authorization.substring("Bearer ".length()), verifier::verify);
         } catch (JWTVerificationException e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             return;
         }
-        if (!jwt.getClaim("Scope").asString().equals("user")) {
+        if (!"user".equals(token.scope())) {
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             return;
         }
-        var userId = jwt.getSubject();
         try {
-            AuthorizedUser.AUTHORIZED_USER_THREAD_LOCAL.set(new AuthorizedUser(userId));
-            filterChain.doFilter(request, response);
-        }
-        finally {
-            AuthorizedUser.AUTHORIZED_USER_THREAD_LOCAL.remove();
+            carrier.callAs(new AuthorizedUser(token.userId()), () -> {
+                filterChain.doFilter(request, response);
+                return null;
+            });
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
         }
     }
 }
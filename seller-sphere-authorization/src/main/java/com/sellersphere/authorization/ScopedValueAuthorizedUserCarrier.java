@@ -0,0 +1,49 @@
+package com.sellersphere.authorization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * Carries the user in a {@link ScopedValue}: nothing to clean up per thread, and the binding is
+ * inherited by the subtasks forked in a {@link StructuredTaskScope}.
+ */
+final class ScopedValueAuthorizedUserCarrier implements AuthorizedUserCarrier {
+
+    static final ScopedValueAuthorizedUserCarrier INSTANCE = new ScopedValueAuthorizedUserCarrier();
+
+    private static final ScopedValue<AuthorizedUser> AUTHORIZED_USER = ScopedValue.newInstance();
+
+    private ScopedValueAuthorizedUserCarrier() {
+    }
+
+    @Override
+    public Optional<AuthorizedUser> current() {
+        return AUTHORIZED_USER.isBound() ? Optional.of(AUTHORIZED_USER.get()) : Optional.empty();
+    }
+
+    @Override
+    public <T> T callAs(AuthorizedUser user, Callable<T> task) throws Exception {
+        return ScopedValue.where(AUTHORIZED_USER, user).call(task::call);
+    }
+
+    @Override
+    public void runAs(AuthorizedUser user, Runnable task) {
+        ScopedValue.where(AUTHORIZED_USER, user).run(task);
+    }
+
+    @Override
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            var subtasks = new ArrayList<StructuredTaskScope.Subtask<T>>(tasks.size());
+            for (Callable<T> task : tasks) subtasks.add(scope.fork(task));
+            scope.join().throwIfFailed();
+            var results = new ArrayList<T>(subtasks.size());
+            for (StructuredTaskScope.Subtask<T> subtask : subtasks) results.add(subtask.get());
+            return results;
+        }
+    }
+}
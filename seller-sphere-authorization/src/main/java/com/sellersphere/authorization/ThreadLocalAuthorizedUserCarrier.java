@@ -0,0 +1,64 @@
+package com.sellersphere.authorization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class ThreadLocalAuthorizedUserCarrier implements AuthorizedUserCarrier {
+
+    static final ThreadLocalAuthorizedUserCarrier INSTANCE = new ThreadLocalAuthorizedUserCarrier();
+
+    private final ThreadLocal<AuthorizedUser> authorizedUser = new ThreadLocal<>();
+
+    private ThreadLocalAuthorizedUserCarrier() {
+    }
+
+    @Override
+    public Optional<AuthorizedUser> current() {
+        return Optional.ofNullable(authorizedUser.get());
+    }
+
+    @Override
+    public <T> T callAs(AuthorizedUser user, Callable<T> task) throws Exception {
+        var previous = authorizedUser.get();
+        authorizedUser.set(user);
+        try {
+            return task.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public void runAs(AuthorizedUser user, Runnable task) {
+        var previous = authorizedUser.get();
+        authorizedUser.set(user);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        var user = authorizedUser.get();
+        var propagated = new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task : tasks) propagated.add(user == null ? task : () -> callAs(user, task));
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = executor.invokeAll(propagated);
+            var results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures) results.add(future.get());
+            return results;
+        }
+    }
+
+    private void restore(AuthorizedUser previous) {
+        if (previous == null) authorizedUser.remove();
+        else authorizedUser.set(previous);
+    }
+}
@@ -0,0 +1,11 @@
+package com.sellersphere.authorization;
+
+import java.time.Instant;
+
+public record VerifiedToken(String userId, String scope, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.sellersphere.authorization;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of already verified access tokens, so a client that keeps sending the same
+ * token for its whole lifetime pays for the signature check only once.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the whole token (never by the signature alone,
+ * as a forged payload could then reuse a cached identity) and expire together with the token.
+ */
+@Component
+public final class VerifiedTokenCache {
+
+    private final Clock clock;
+    private final Cache<TokenDigest, VerifiedToken> cache;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${security.jwt.cache.max-size:10000}") long maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    public VerifiedTokenCache(long maxSize, Clock clock) {
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiration(clock))
+                .build();
+    }
+
+    /**
+     * Returns the cached verification of the token, or verifies it with the given verifier
+     * and caches the result. Verification failures are never cached.
+     */
+    public VerifiedToken verify(String token, Function<String, VerifiedToken> verifier) {
+        var digest = TokenDigest.of(token);
+        var cached = cache.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(clock.instant())) return cached;
+        var verified = verifier.apply(token);
+        if (verified.expiresAt() != null) cache.put(digest, verified);
+        return verified;
+    }
+
+    record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String token) {
+            MessageDigest sha256;
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+            }
+            var digest = ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenDigest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+        }
+    }
+
+    private record UntilTokenExpiration(Clock clock) implements Expiry<TokenDigest, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(TokenDigest key, VerifiedToken value, long currentTime) {
+            var remaining = Duration.between(clock.instant(), value.expiresAt());
+            return remaining.isNegative() ? 0 : remaining.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
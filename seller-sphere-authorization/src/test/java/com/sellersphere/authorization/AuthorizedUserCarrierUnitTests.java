@@ -0,0 +1,74 @@
+package com.sellersphere.authorization;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuthorizedUserCarrierUnitTests {
+
+    static final AuthorizedUser BOB = new AuthorizedUser("USER#bob@bmail.com");
+    static final AuthorizedUser ALICE = new AuthorizedUser("USER#alice@amail.com");
+
+    @ParameterizedTest
+    @ValueSource(strings = { "thread-local", "scoped-value" })
+    @DisplayName("The user is current only while the task runs")
+    void theUserIsCurrentOnlyWhileTheTaskRuns(String name) throws Exception {
+        var carrier = AuthorizedUserCarrier.of(name);
+
+        assertThat(carrier.callAs(BOB, carrier::current)).contains(BOB);
+        carrier.runAs(BOB, () -> assertThat(carrier.current()).contains(BOB));
+        assertThat(carrier.current()).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "thread-local", "scoped-value" })
+    @DisplayName("A nested user is current until its task ends")
+    void aNestedUserIsCurrentUntilItsTaskEnds(String name) throws Exception {
+        var carrier = AuthorizedUserCarrier.of(name);
+
+        assertThat(carrier.callAs(BOB, () -> List.of(carrier.callAs(ALICE, carrier::current), carrier.current())))
+                .containsExactly(Optional.of(ALICE), Optional.of(BOB));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "thread-local", "scoped-value" })
+    @DisplayName("Tasks invoked together run as the current user")
+    void tasksInvokedTogetherRunAsTheCurrentUser(String name) throws Exception {
+        var carrier = AuthorizedUserCarrier.of(name);
+        Callable<Optional<AuthorizedUser>> task = carrier::current;
+
+        assertThat(carrier.callAs(BOB, () -> carrier.invokeAll(List.of(task, task))))
+                .containsExactly(Optional.of(BOB), Optional.of(BOB));
+    }
+
+    @Test
+    @DisplayName("The thread-local user does not leak to the next task of a pooled thread")
+    void theThreadLocalUserDoesNotLeakToTheNextTaskOfAPooledThread() throws Exception {
+        var carrier = AuthorizedUserCarrier.of("thread-local");
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            executor.submit(() -> carrier.runAs(BOB, () -> {})).get();
+
+            assertThat(executor.submit(carrier::current).get()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Another carrier cannot be configured once one is selected")
+    void anotherCarrierCannotBeConfiguredOnceOneIsSelected() {
+        var selected = AuthorizedUserCarrier.of("thread-local");
+        AuthorizedUser.configure(selected);
+        AuthorizedUser.configure(selected);
+
+        assertThrows(IllegalStateException.class, () -> AuthorizedUser.configure(AuthorizedUserCarrier.of("scoped-value")));
+        assertThrows(IllegalArgumentException.class, () -> AuthorizedUserCarrier.of("inheritable"));
+    }
+}
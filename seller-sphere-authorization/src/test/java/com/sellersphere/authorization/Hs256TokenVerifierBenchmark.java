@@ -0,0 +1,68 @@
+package com.sellersphere.authorization;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the HS256 fast path against the auth0 verifier previously used by the filter.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sellersphere.authorization.Hs256TokenVerifierBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Hs256TokenVerifierBenchmark {
+
+    static final String ISSUER = "https://seller-sphere.com", SECRET = "benchmark-secret";
+
+    String token;
+    JWTVerifier auth0;
+    Hs256TokenVerifier hs256;
+
+    @Setup
+    public void setup() {
+        token = JWT.create()
+                .withIssuer(ISSUER)
+                .withSubject("USER#bob@bmail.com")
+                .withClaim("SessionId", "-4613872643218731234")
+                .withClaim("Scope", "user")
+                .withExpiresAt(Instant.now().plusSeconds(3600))
+                .sign(Algorithm.HMAC256(SECRET));
+        auth0 = JWT.require(Algorithm.HMAC256(SECRET))
+                .withIssuer(ISSUER)
+                .withClaimPresence("Scope")
+                .withClaimPresence("sub")
+                .build();
+        hs256 = new Hs256TokenVerifier(ISSUER, SECRET);
+    }
+
+    @Benchmark
+    public VerifiedToken auth0() {
+        DecodedJWT jwt = auth0.verify(token);
+        return new VerifiedToken(jwt.getSubject(), jwt.getClaim("Scope").asString(), jwt.getExpiresAtAsInstant());
+    }
+
+    @Benchmark
+    public VerifiedToken hs256FastPath() {
+        return hs256.verify(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(Hs256TokenVerifierBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
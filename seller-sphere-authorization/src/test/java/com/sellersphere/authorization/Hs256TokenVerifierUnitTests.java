@@ -0,0 +1,107 @@
+package com.sellersphere.authorization;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Hs256TokenVerifierUnitTests {
+
+    static final String ISSUER = "https://seller-sphere.com", SECRET = "secret";
+    static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    final Hs256TokenVerifier verifier = new Hs256TokenVerifier(ISSUER, SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("Access tokens of the user-service are verified by the fast path")
+    void accessTokensOfTheUserServiceAreVerifiedByTheFastPath() {
+        var token = userAccessToken(ISSUER, NOW.plusSeconds(900), Algorithm.HMAC256(SECRET));
+
+        var expected = new VerifiedToken("USER#bob@bmail.com", "user", NOW.plusSeconds(900));
+        assertThat(verifier.verifyFast(token)).isEqualTo(expected);
+        assertThat(verifier.verify(token)).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Tokens with a tampered payload are rejected")
+    void tokensWithATamperedPayloadAreRejected() {
+        var parts = userAccessToken(ISSUER, NOW.plusSeconds(900), Algorithm.HMAC256(SECRET)).split("\\.");
+        var payload = new String(Base64.getUrlDecoder().decode(parts[1]), UTF_8).replace("bob", "eve");
+        var tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(UTF_8)) + "." + parts[2];
+
+        assertThat(verifier.verifyFast(tampered)).isNull();
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(tampered));
+    }
+
+    @Test
+    @DisplayName("Expired tokens are rejected")
+    void expiredTokensAreRejected() {
+        var token = userAccessToken(ISSUER, NOW.minusSeconds(1), Algorithm.HMAC256(SECRET));
+
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    @DisplayName("Tokens of another issuer are rejected")
+    void tokensOfAnotherIssuerAreRejected() {
+        var token = userAccessToken("https://evil.com", NOW.plusSeconds(900), Algorithm.HMAC256(SECRET));
+
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    @DisplayName("Tokens signed with another algorithm go through the fallback verifier")
+    void tokensSignedWithAnotherAlgorithmGoThroughTheFallbackVerifier() {
+        var token = userAccessToken(ISSUER, NOW.plusSeconds(900), Algorithm.HMAC512(SECRET));
+
+        assertThat(verifier.verifyFast(token)).isNull();
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    @DisplayName("Claims with escaped characters go through the fallback verifier")
+    void claimsWithEscapedCharactersGoThroughTheFallbackVerifier() {
+        var token = JWT.create()
+                .withIssuer(ISSUER)
+                .withSubject("USER#\"quoted\"@bmail.com")
+                .withClaim("Scope", "user")
+                .withExpiresAt(NOW.plusSeconds(900))
+                .sign(Algorithm.HMAC256(SECRET));
+
+        assertThat(verifier.verifyFast(token)).isNull();
+        assertThat(verifier.verify(token).userId()).isEqualTo("USER#\"quoted\"@bmail.com");
+    }
+
+    @Test
+    @DisplayName("Tokens without a Scope claim are rejected")
+    void tokensWithoutAScopeClaimAreRejected() {
+        var token = JWT.create()
+                .withIssuer(ISSUER)
+                .withSubject("USER#bob@bmail.com")
+                .withExpiresAt(NOW.plusSeconds(900))
+                .sign(Algorithm.HMAC256(SECRET));
+
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(token));
+    }
+
+    static String userAccessToken(String issuer, Instant expiresAt, Algorithm algorithm) {
+        return JWT.create()
+                .withIssuer(issuer)
+                .withSubject("USER#bob@bmail.com")
+                .withClaim("SessionId", "-4613872643218731234")
+                .withClaim("Scope", "user")
+                .withExpiresAt(expiresAt)
+                .sign(algorithm);
+    }
+}